@@ -0,0 +1,62 @@
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+/**
+ * draws the upgrade advice from a cached layer, like StatsPanel. a plan never changes once it's made, so the
+ * text is only formatted and laid out again when the simulation publishes a new plan or the next upgrade
+ * becomes affordable (or stops being affordable)
+ */
+public class AdvicePanel {
+  // what each upgrade is called in the advice, indexed like the upgrades
+  private static final String[] NAMES = {"less food use", "more $ per hit", "more food", "less red loss"};
+
+  private PApplet app;                 // PApplet to draw with
+  private PGraphics layer;             // cached rendering of the advice
+  private UpgradePlanner.Plan advice;  // plan the layer was last drawn with
+  private boolean affordable;          // whether the next upgrade could be bought when the layer was drawn
+
+  /**
+   * Constructs a new AdvicePanel
+   *
+   * @param app PApplet instance
+   */
+  public AdvicePanel(PApplet app) {
+    this.app = app;
+    layer = app.createGraphics(100, 80);
+  }
+
+  /**
+   * Draws the advice, re-rendering the layer first if the plan or what can be afforded changed
+   *
+   * @param advice latest plan, or null if the ball hasn't stopped yet this game
+   * @param money  player money
+   * @param prices price of each upgrade
+   */
+  public void draw(UpgradePlanner.Plan advice, float money, float[] prices) {
+    if (advice == null) {
+      return;  // the ball hasn't stopped yet this game
+    }
+    boolean affordable = advice.order.length > 0 && money >= prices[advice.order[0]];
+    if (advice != this.advice || affordable != this.affordable) {
+      this.advice = advice;
+      this.affordable = affordable;
+      String text;
+      if (advice.launches < 0) {
+        text = "No upgrades\nwin at this\nrate. Hit more\nbuildings!";
+      } else if (advice.order.length == 0) {
+        text = String.format("Keep going,\nwin in about\n%d launches", advice.launches);
+      } else {
+        // the next upgrade, and whether it can be bought right now
+        text = String.format("%s:\n%s\nwin in about\n%d launches", affordable ? "Buy now" : "Save for",
+                             NAMES[advice.order[0]], advice.launches);
+      }
+      layer.beginDraw();
+      layer.clear();
+      layer.fill(255);
+      layer.textSize(12);
+      layer.text(text, 5, 15);
+      layer.endDraw();
+    }
+    app.image(layer, 0, 195);
+  }
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * process-wide cache of every image in the game. all images are decoded once, in parallel, and packed into
+ * one texture atlas so that starting a new game never has to touch the disk for graphics again
+ */
+public class Assets {
+  // names of every image in the graphics folder (without the .png extension)
+  private static final String[] NAMES = {
+    "building0", "building1", "building2", "building3", "building4", "building5", "building6", "building7",
+    "building8", "bad", "food", "money", "wage", "about", "upgrades", "confirm", "win", "lose", "upgrade0",
+    "upgrade1", "upgrade2", "upgrade3", "continue", "foodButton", "save", "new", "aboutButton", "back",
+    "upgradesButton"
+  };
+  private static final int ATLAS_WIDTH = 2048;  // width of the atlas, wide enough for the biggest image
+  private static final int PADDING = 1;         // empty pixels between sprites so scaled sprites don't bleed
+
+  private static PImage atlas;                                          // the single image holding every sprite
+  private static HashMap<String, Sprite> sprites = new HashMap<String, Sprite>();  // sprite lookup by name
+
+  /**
+   * Decodes all the images and packs them into the atlas. Does nothing if the assets are already loaded
+   *
+   * @param app PApplet instance used for decoding and creating the atlas
+   * @throws IllegalStateException if an image is missing or can't be decoded
+   */
+  public static synchronized void load(PApplet app) {
+    if (atlas != null) {
+      return;
+    }
+
+    // decode every image on its own thread
+    PImage[] images = new PImage[NAMES.length];
+    ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      ArrayList<Future<PImage>> decoding = new ArrayList<Future<PImage>>();
+      for (String name : NAMES) {
+        decoding.add(pool.submit(() -> app.loadImage("graphics/" + name + ".png")));
+      }
+      for (int i = 0; i < NAMES.length; i++) {
+        images[i] = decoding.get(i).get();
+      }
+    } catch (Exception e) {
+      // without every sprite the game can't draw anything, so stop here rather than at the first draw
+      throw new IllegalStateException("asset loading error: " + e, e);
+    } finally {
+      pool.shutdown();
+    }
+    // loadImage gives null for a missing file and a -1 wide image for one it can't decode
+    for (int i = 0; i < NAMES.length; i++) {
+      if (images[i] == null || images[i].width <= 0) {
+        throw new IllegalStateException("asset loading error: could not load graphics/" + NAMES[i] + ".png");
+      }
+    }
+
+    // shelf packing: place images left to right in rows, tallest images first so rows waste less space
+    Integer[] order = new Integer[NAMES.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> images[b].height - images[a].height);
+
+    int[] us = new int[NAMES.length];
+    int[] vs = new int[NAMES.length];
+    int x = 0;          // next free spot in the current row
+    int y = 0;          // top of the current row
+    int rowHeight = 0;  // height of the current row (its first, tallest image)
+    for (int i : order) {
+      if (x + images[i].width > ATLAS_WIDTH) {
+        // start a new row if the image doesn't fit
+        x = 0;
+        y += rowHeight + PADDING;
+        rowHeight = 0;
+      }
+      us[i] = x;
+      vs[i] = y;
+      x += images[i].width + PADDING;
+      rowHeight = Math.max(rowHeight, images[i].height);
+    }
+
+    // copy each image into its spot, row by row
+    atlas = app.createImage(ATLAS_WIDTH, y + rowHeight, PApplet.ARGB);
+    atlas.loadPixels();
+    for (int i = 0; i < NAMES.length; i++) {
+      images[i].loadPixels();
+      for (int row = 0; row < images[i].height; row++) {
+        System.arraycopy(images[i].pixels, row * images[i].width,
+                         atlas.pixels, (vs[i] + row) * ATLAS_WIDTH + us[i], images[i].width);
+      }
+      sprites.put(NAMES[i], new Sprite(atlas, us[i], vs[i], images[i].width, images[i].height));
+    }
+    atlas.updatePixels();
+  }
+
+  /**
+   * Gets the sprite for an image
+   *
+   * @param name file name of the image without the folder or extension
+   * @return the sprite, or null if the assets haven't been loaded
+   */
+  public static Sprite get(String name) {
+    return sprites.get(name);
+  }
+}
@@ -1,5 +1,4 @@
 import processing.core.PApplet;
-import processing.core.PImage;
 
 /**
  * A rectangular button that can be drawn and clicked
@@ -12,7 +11,7 @@ public class Button {
   int width;
   int height;
   PApplet app;     // The PApplet instance used for drawing
-  private PImage img;      // Button image drawn to screen
+  Sprite img;              // Button image drawn to screen
   private String function; // The function associated with the button
 
   /**
@@ -26,7 +25,7 @@ public class Button {
    * @param a PApplet instance used for drawing
    * @param f button function
    */
-  public Button(int l, int t, int w, int h, PImage i, PApplet a, String f) {
+  public Button(int l, int t, int w, int h, Sprite i, PApplet a, String f) {
     top = t;
     left = l;
     width = w;
@@ -40,7 +39,7 @@ public class Button {
    * Draws the button on the screen
    */
   public void draw() {
-    app.image(img, left, top);  // Display the image at the specified position
+    img.draw(app, left, top);  // Display the image at the specified position
   }
 
   /**
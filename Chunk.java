@@ -1,111 +1,308 @@
 import java.io.PrintWriter;
 import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 /**
  * represents which tiles in a square section has been changed (in this case, used up) by the player (upon collision)
  * while the world can be simply stored in the seed, the way that the player changes the world must be manually stored
  * this is done in sections, or chunks, which is much more space efficient than loading a giant 2d array
+ *
+ * the game saves a chunk as one line of '0' and '1' per tile. WorldStoreTool can compact a world into packed
+ * files, a PACKED byte followed by the tiles from toBytes; load reads either, and a packed chunk the game
+ * saves again goes back to text
  */
 public class Chunk {
+  public static final byte PACKED = 'P';  // first byte of a packed chunk file; never a tile in a text one
   
-  public static int chunkSize = 24; //size of chunk. currently 24x24
-  public boolean[][] data; //2d array of which tiles have been used up and which haven't
+  public final int size; //width and height of the chunk in tiles, set per world
+  // which tiles have been used up, one bit per tile. tile (i, j) is bit i * size + j, the same order as the
+  // chunk file, so 24x24 chunks take nine longs and a whole row of longs can be tested at once
+  private final long[] bits;
+  public boolean dirty;    //whether tiles have been used since the chunk was last saved or loaded
+  // generated tiles of the chunk while it is loaded in a world, from TerrainCache; shared, so read only
+  public byte[] terrain;
   
   /**
    * Constructs a new Chunk where no tiles have been used up
+   *
+   * @param size width and height of the chunk
+   */
+  public Chunk(int size) {
+    this.size = size;
+    // all bits start at 0 (unused)
+    bits = new long[(size * size + 63) / 64];
+  }
+
+  /**
+   * Checks if a tile has been used
+   *
+   * @param i in-chunk x coordinate
+   * @param j in-chunk y coordinate
+   * @return whether the tile is used
    */
-  public Chunk() {
-    // Initialize the data array with default value (false)
-    data = new boolean[chunkSize][chunkSize];
-    // Loop through entire 2d array
-    for (int i = 0; i < chunkSize; i++) {
-      for (int j = 0; j < chunkSize; j++) {
-        data[i][j] = false;
+  public boolean get(int i, int j) {
+    int n = i * size + j;
+    return (bits[n >> 6] & 1L << n) != 0;
+  }
+
+  /**
+   * Marks a tile as used. Doesn't touch dirty, since loading uses this too
+   *
+   * @param i in-chunk x coordinate
+   * @param j in-chunk y coordinate
+   */
+  public void set(int i, int j) {
+    int n = i * size + j;
+    bits[n >> 6] |= 1L << n;
+  }
+
+  /**
+   * Counts the used tiles
+   *
+   * @return number of used tiles
+   */
+  public int count() {
+    int total = 0;
+    for (long b : bits) {
+      total += Long.bitCount(b);
+    }
+    return total;
+  }
+
+  /**
+   * Checks if any tile has been used
+   *
+   * @return whether at least one tile is used
+   */
+  public boolean any() {
+    for (long b : bits) {
+      if (b != 0) {
+        return true;
       }
     }
+    return false;
   }
-  
+
+  /**
+   * Marks every tile as unused again, so the chunk can be reused for another spot
+   */
+  public void clear() {
+    Arrays.fill(bits, 0);
+    dirty = false;
+    terrain = null;
+  }
+
+  /**
+   * Packs the used tiles 8 to a byte, tile n in bit n % 8 of byte n / 8
+   *
+   * @param out array of at least (size * size + 7) / 8 bytes
+   */
+  public void toBytes(byte[] out) {
+    toBytes(out, 0);
+  }
+
+  /**
+   * Packs the used tiles like toBytes into part of an array
+   *
+   * @param out    array to pack into
+   * @param offset index of the first packed byte
+   */
+  public void toBytes(byte[] out, int offset) {
+    for (int k = 0, n = (size * size + 7) / 8; k < n; k++) {
+      out[offset + k] = (byte) (bits[k >> 3] >>> ((k & 7) * 8));
+    }
+  }
+
+  /**
+   * Unpacks used tiles packed by toBytes, replacing the ones in the chunk
+   *
+   * @param in packed tiles
+   */
+  public void fromBytes(byte[] in) {
+    fromBytes(in, 0);
+  }
+
+  /**
+   * Unpacks used tiles packed by toBytes from part of an array, replacing the ones in the chunk
+   *
+   * @param in     array holding the packed tiles
+   * @param offset index of the first packed byte
+   */
+  public void fromBytes(byte[] in, int offset) {
+    Arrays.fill(bits, 0);
+    for (int k = 0, n = (size * size + 7) / 8; k < n; k++) {
+      bits[k >> 3] |= (in[offset + k] & 0xFFL) << ((k & 7) * 8);
+    }
+  }
+
+  /**
+   * Gets how long a packed chunk file is
+   *
+   * @param size width and height of the chunk
+   * @return the PACKED byte plus the packed tiles
+   */
+  public static int packedLength(int size) {
+    return 1 + (size * size + 7) / 8;
+  }
+
   /**
-   * Constructs a new Chunk object with the given data array
+   * Checks if the start of a chunk file is a packed chunk
    *
-   * @param data The data to be stored in the chunk
+   * @param in     bytes of the file
+   * @param length number of bytes read
+   * @param size   width and height of the chunk
+   * @return whether the file is the PACKED byte and exactly one chunk of packed tiles
    */
-  public Chunk(boolean[][] data) {
-    this.data = data;
+  public static boolean isPacked(byte[] in, int length, int size) {
+    return length == packedLength(size) && in[0] == PACKED;
   }
   
   /**
    * Saves the chunk data to a file with its name determined by the chunk coordinates
    *
-   * @param x The x-coordinate of the chunk
-   * @param y The y-coordinate of the chunk
+   * @param dir folder the world is saved in
+   * @param x   The x-coordinate of the chunk
+   * @param y   The y-coordinate of the chunk
    */
-  public void save(int x, int y) {
+  public void save(String dir, int x, int y) {
     try {
-      // initialize printwriter with the correct filename
-      PrintWriter pw = new PrintWriter(String.format("world/%d_%d", x, y));
-      //empty string to append to later
-      String out = "";
-      for (int i = 0; i < chunkSize; i++) {
-        for (int j = 0; j < chunkSize; j++) {
-          // loops through the entire chunk. if the tile is used adds a 1 to output string
-          if (data[i][j]) {
-            out += "1";
-          } else {
-            // otherwise adds a 0 to output string
-            out += "0";
-          }
-        }
-      }
-      //write to the file and then save the file by closing printwriter object
-      pw.print(out);
-      pw.close();
+      write(dir, x, y);
     } catch (IOException e) {
-      // Print error message if there's an issue saving the chunk
+      // Print error message if there's an issue saving the chunk; it stays dirty
       System.out.println(String.format("chunk save error at (%d, %d):", x, y));
       System.out.println(e);
     }
   }
+
+  /**
+   * Saves the chunk data like save, but lets the caller know if it couldn't be written
+   *
+   * @param dir folder the world is saved in
+   * @param x   The x-coordinate of the chunk
+   * @param y   The y-coordinate of the chunk
+   * @throws IOException if the file can't be written; the chunk stays dirty
+   */
+  public void write(String dir, int x, int y) throws IOException {
+    GameEvents.ChunkSave event = new GameEvents.ChunkSave();
+    event.begin();
+    // initialize printwriter with the correct filename; closed even if writing fails
+    try (PrintWriter pw = new PrintWriter(String.format("%s/%d_%d", dir, x, y))) {
+      //builder to append to later
+      StringBuilder out = new StringBuilder(size * size);
+      for (int n = 0; n < size * size; n++) {
+        // loops through the entire chunk. adds a 1 to the output if the tile is used, otherwise a 0
+        out.append((bits[n >> 6] & 1L << n) != 0 ? '1' : '0');
+      }
+      //write to the file; printwriter doesn't throw, so check it before calling the chunk saved
+      pw.print(out);
+      if (pw.checkError()) {
+        throw new IOException("write failed");
+      }
+      dirty = false;
+      if (event.shouldCommit()) {
+        event.x = x;
+        event.y = y;
+        event.bytes = out.length();
+        event.commit();
+      }
+    }
+  }
   
   /**
    * Loads the chunk data from a file named with the specified coordinates
    *
-   * @param x The x-coordinate of the chunk
-   * @param y The y-coordinate of the chunk
+   * @param dir  folder the world is saved in
+   * @param x    The x-coordinate of the chunk
+   * @param y    The y-coordinate of the chunk
+   * @param size width and height of the chunk
    * @return The loaded Chunk object
    */
-  public static Chunk load(int x, int y) {
-    try {
-      // opens file for the specific chunk
-      Scanner s = new Scanner(new File(String.format("world/%d_%d", x, y)));
-      // gets entire file (it's just one line)
-      String inRaw = s.nextLine();
-      int stringIndex = 0;
-      // initialize chunk data array
-      boolean[][] data = new boolean[chunkSize][chunkSize];
-
-      for (int i = 0; i < chunkSize; i++) {
-        for (int j = 0; j < chunkSize; j++) {
-          // loop through array
-          char c = inRaw.charAt(stringIndex);
-          // fill in with false or true depending on input string
-          if (c == '0') {
-            data[i][j] = false;
-          } else {
-            data[i][j] = true;
-          }
-          // increase index to search in the string
-          stringIndex++;
-        }
+  public static Chunk load(String dir, int x, int y, int size) {
+    return load(dir, x, y, new Chunk(size));
+  }
+
+  /**
+   * Loads the chunk data from a file into a chunk that is being reused, such as one from ChunkCache's pool
+   *
+   * @param dir   folder the world is saved in
+   * @param x     The x-coordinate of the chunk
+   * @param y     The y-coordinate of the chunk
+   * @param chunk chunk to load into; whatever it held is cleared
+   * @return the same chunk
+   */
+  public static Chunk load(String dir, int x, int y, Chunk chunk) {
+    GameEvents.ChunkLoad event = new GameEvents.ChunkLoad();
+    event.begin();
+    chunk.clear();
+    File file = new File(String.format("%s/%d_%d", dir, x, y));
+    int bytes = 0;
+    boolean found = false;
+    // never saved: blank, without paying for a FileNotFoundException on every new chunk
+    if (file.isFile()) {
+      try {
+        bytes = readInto(file, chunk);
+        found = true;
+      } catch (IOException e) {
+        // leave the chunk blank if there's an issue loading it
+      }
+    }
+    if (event.shouldCommit()) {
+      event.x = x;
+      event.y = y;
+      event.bytes = bytes;
+      event.found = found;
+      event.commit();
+    }
+    return chunk;
+  }
+
+  /**
+   * Loads the chunk data like load, but lets the caller know if a saved chunk couldn't be read instead of
+   * treating it as blank
+   *
+   * @param dir  folder the world is saved in
+   * @param x    The x-coordinate of the chunk
+   * @param y    The y-coordinate of the chunk
+   * @param size width and height of the chunk
+   * @return The loaded Chunk object; blank if it was never saved
+   * @throws IOException if the chunk file exists but can't be read
+   */
+  public static Chunk read(String dir, int x, int y, int size) throws IOException {
+    Chunk chunk = new Chunk(size);
+    File file = new File(String.format("%s/%d_%d", dir, x, y));
+    if (file.isFile()) {
+      readInto(file, chunk);
+    }
+    return chunk;
+  }
+
+  /**
+   * Reads the used tiles of a chunk file into a blank chunk
+   *
+   * @param file  chunk file
+   * @param chunk chunk to fill in; left blank if reading fails
+   * @return length of the file
+   * @throws IOException if the file can't be read
+   */
+  private static int readInto(File file, Chunk chunk) throws IOException {
+    int size = chunk.size;
+    // the whole file at once; it's one chunk, and read errors aren't hidden the way Scanner hides them
+    byte[] in = Files.readAllBytes(file.toPath());
+    if (isPacked(in, in.length, size)) {
+      chunk.fromBytes(in, 1);
+      return in.length;
+    }
+
+    // text is one line; a truncated file only has the first tiles, the rest are left unused
+    int length = Math.min(in.length, size * size);
+    for (int n = 0; n < length && in[n] != '\n' && in[n] != '\r'; n++) {
+      // fill in with 0 or 1 depending on the character
+      if (in[n] != '0') {
+        chunk.bits[n >> 6] |= 1L << n;
       }
-      // close file input stream
-      s.close();
-      return new Chunk(data);
-    } catch (IOException e) {
-      // Return a new Chunk object with default data if there's an issue loading the chunk
-      return new Chunk();
     }
+    return in.length;
   }
-}
\ No newline at end of file
+}
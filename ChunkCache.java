@@ -0,0 +1,282 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * keeps loaded chunks in memory up to a memory budget. chunks that go off screen are not evicted right
+ * away: everything within a margin around the view is always kept, and beyond that the least recently
+ * seen chunks are evicted only once the budget is used up. this stops chunks from being saved and loaded
+ * again every few frames when the player moves back and forth over a chunk border
+ */
+public class ChunkCache {
+  // default memory budget in bytes: about 200 32x32 chunks, a few screens of chunks with their margins
+  public static final long DEFAULT_BUDGET = 256 * 1024;
+  public static final int DEFAULT_MARGIN = 2;                 // default chunks kept around the view
+  private static final int MAX_SPARE = 64;                    // evicted chunks kept for reuse
+
+  // loaded chunks from least to most recently seen. insertion ordered so that lookups from getTile
+  // don't reorder anything; chunks are moved to the end explicitly by touch
+  private LinkedHashMap<Integer, Chunk> chunks = new LinkedHashMap<Integer, Chunk>();
+  private long budget;        // how many bytes of chunks can be kept
+  private int margin;         // chunks around the view that are never evicted
+  private long chunkBytes;    // estimated heap used by one chunk
+  private int chunkSize;      // width and height of the chunks
+  // evicted chunks, cleared and waiting to be loaded into again, so that moving around doesn't allocate chunks
+  private ArrayDeque<Chunk> spare = new ArrayDeque<Chunk>();
+
+  // metrics
+  private long hits;          // chunks that were needed and already loaded
+  private long misses;        // chunks that were needed and had to be loaded
+  private long evictions;     // chunks removed from memory
+  private long writes;        // evicted chunks that had changes and were saved
+  private long failures;      // evictions put off because the chunk couldn't be saved
+  private long reused;        // chunks handed out from the spares instead of allocated
+  private long changes;       // chunks added or removed, so readers can tell when the set of chunks changed
+
+  /**
+   * Constructs a new ChunkCache
+   *
+   * @param chunkSize width and height of the chunks
+   * @param budget    memory budget in bytes
+   * @param margin    chunks around the view that are never evicted
+   */
+  public ChunkCache(int chunkSize, long budget, int margin) {
+    this.budget = budget;
+    this.margin = margin;
+    this.chunkSize = chunkSize;
+    // a long per 64 tiles with a 16 byte header and 8 byte alignment, plus the Chunk itself and its map entry.
+    // loaded chunks also keep their terrain array alive, which is counted as theirs even though it's shared
+    chunkBytes = align(16 + 8L * ((chunkSize * chunkSize + 63) / 64)) + align(16 + chunkSize * chunkSize) + 32 + 48;
+  }
+
+  /**
+   * Gets a blank chunk to load into, reusing an evicted one when there is one
+   *
+   * @return a chunk with no used tiles
+   */
+  public Chunk obtain() {
+    Chunk c = spare.poll();
+    if (c == null) {
+      return new Chunk(chunkSize);
+    }
+    reused++;
+    return c;
+  }
+
+  /**
+   * Gets a loaded chunk without counting it as seen
+   *
+   * @param key combined chunk coordinates
+   * @return the chunk, or null if it isn't loaded
+   */
+  public Chunk get(int key) {
+    return chunks.get(key);
+  }
+
+  /**
+   * Adds a loaded chunk as the most recently seen
+   *
+   * @param key   combined chunk coordinates
+   * @param chunk the chunk
+   */
+  public void put(int key, Chunk chunk) {
+    chunks.remove(key);
+    chunks.put(key, chunk);
+    changes++;
+  }
+
+  /**
+   * Removes a loaded chunk without saving it
+   *
+   * @param key combined chunk coordinates
+   * @return the chunk, or null if it wasn't loaded
+   */
+  public Chunk remove(int key) {
+    Chunk c = chunks.remove(key);
+    if (c != null) {
+      changes++;
+    }
+    return c;
+  }
+
+  /**
+   * Gets a chunk that is in view, counting a hit or a miss. Returns null on a miss so the caller
+   * can load the chunk
+   *
+   * @param key combined chunk coordinates
+   * @return the chunk, or null if it isn't loaded
+   */
+  public Chunk need(int key) {
+    Chunk c = chunks.remove(key);
+    if (c == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    // move to the most recently seen end
+    chunks.put(key, c);
+    return c;
+  }
+
+  /**
+   * Evicts the least recently seen chunks outside the protected area until the cache fits its budget.
+   * Evicted chunks are saved first if they have changes. A chunk that can't be saved stays loaded, as the most
+   * recently seen, so its used tiles aren't lost and the save is tried again once it's the oldest again
+   *
+   * @param dir    folder the chunks are saved in
+   * @param left   left chunk coordinate of the view (inclusive)
+   * @param top    top chunk coordinate of the view (inclusive)
+   * @param right  right chunk coordinate of the view (inclusive)
+   * @param bottom bottom chunk coordinate of the view (inclusive)
+   */
+  public void evict(String dir, int left, int top, int right, int bottom) {
+    if (residentBytes() <= budget) {
+      return;
+    }
+    ArrayList<Integer> toRemove = new ArrayList<Integer>();
+    long resident = residentBytes();
+    // oldest first
+    for (int key : chunks.keySet()) {
+      if (resident <= budget) {
+        break;
+      }
+      int x = Convert.oneToFirst(key);
+      int y = Convert.oneToSecond(key);
+      // the same bounds on every side, widened by the margin
+      if (x < left - margin || x > right + margin || y < top - margin || y > bottom + margin) {
+        toRemove.add(key);
+        resident -= chunkBytes;
+      }
+    }
+
+    for (int key : toRemove) {
+      GameEvents.ChunkEvict event = new GameEvents.ChunkEvict();
+      event.begin();
+      Chunk c = chunks.get(key);
+      boolean saved = c.dirty;
+      if (saved) {
+        // saves the chunk first before removing
+        c.save(dir, Convert.oneToFirst(key), Convert.oneToSecond(key));
+        if (c.dirty) {
+          // the write failed: keep the chunk rather than throw its used tiles away
+          failures++;
+          chunks.remove(key);
+          chunks.put(key, c);
+          continue;
+        }
+        writes++;
+      }
+      chunks.remove(key);
+      changes++;
+      evictions++;
+      // nothing else keeps evicted chunks, so they can be reused for the next ones loaded
+      if (spare.size() < MAX_SPARE) {
+        c.clear();
+        spare.push(c);
+      }
+      if (event.shouldCommit()) {
+        event.x = Convert.oneToFirst(key);
+        event.y = Convert.oneToSecond(key);
+        event.bytes = chunkBytes;
+        event.saved = saved;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Saves every loaded chunk that has changes, so that a crash loses at most what changed since the last flush
+   *
+   * @param dir folder the chunks are saved in
+   * @return number of chunks written
+   */
+  public int flush(String dir) {
+    int written = 0;
+    for (int key : chunks.keySet()) {
+      Chunk c = chunks.get(key);
+      if (c.dirty) {
+        c.save(dir, Convert.oneToFirst(key), Convert.oneToSecond(key));
+        if (c.dirty) {
+          failures++;
+        } else {
+          written++;
+        }
+      }
+    }
+    writes += written;
+    return written;
+  }
+
+  /**
+   * Gets every loaded chunk
+   *
+   * @return map of loaded chunks, keyed by the combined chunk coordinates
+   */
+  public HashMap<Integer, Chunk> map() {
+    return chunks;
+  }
+
+  /**
+   * Gets how many chunks are loaded
+   *
+   * @return number of chunks
+   */
+  public int size() {
+    return chunks.size();
+  }
+
+  /**
+   * Gets the estimated memory used by the loaded chunks
+   *
+   * @return bytes
+   */
+  public long residentBytes() {
+    return chunks.size() * chunkBytes;
+  }
+
+  /**
+   * Gets the share of needed chunks that were already loaded
+   *
+   * @return hit rate between 0 and 1
+   */
+  public float hitRate() {
+    return hits + misses == 0 ? 1 : (float) hits / (hits + misses);
+  }
+
+  /**
+   * Gets how many chunks have been evicted
+   *
+   * @return number of evictions
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Gets how many times a chunk has been added or removed
+   *
+   * @return count that changes whenever the set of loaded chunks does
+   */
+  public long getChanges() {
+    return changes;
+  }
+
+  /**
+   * Describes the cache metrics
+   *
+   * @return hit rate, evictions, and resident memory
+   */
+  public String toString() {
+    return String.format("chunks: %d resident (%d KB of %d KB), hit rate %.2f%%, %d misses, %d evictions, %d writes, "
+                         + "%d failed writes, %d reused", chunks.size(), residentBytes() / 1024, budget / 1024,
+                         hitRate() * 100, misses, evictions, writes, failures, reused);
+  }
+
+  /**
+   * Rounds a size up to the 8 bytes that objects are aligned to
+   */
+  private static long align(long n) {
+    return (n + 7) / 8 * 8;
+  }
+}
@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * goes through every chunk file of a saved world for the command line tools. the folder is streamed through a
+ * small queue to one thread per handler, so memory stays the same no matter how many chunk files there are,
+ * and a file that fails in an unexpected way goes to its handler's failed instead of stopping the thread (which
+ * would leave the folder listing waiting forever for room on the queue)
+ *
+ * chunk files are also checked here, so that every tool agrees on what a valid one is: a text chunk is exactly
+ * one '0' or '1' per tile with an optional line break, and a packed one (see Chunk.PACKED) is exactly its length
+ */
+public class ChunkFiles {
+  private static final Path END = Paths.get("");  // put on the queue once per thread when the folder is done
+  private static final int QUEUE_SIZE = 1024;     // files waiting for a thread; the folder listing blocks when full
+
+  /**
+   * what a tool does with each chunk file. every thread has its own handler, so handlers can keep buffers and
+   * totals without sharing them
+   */
+  public interface Handler {
+    /**
+     * Handles one chunk file
+     *
+     * @param p chunk file
+     */
+    void handle(Path p);
+
+    /**
+     * Called instead when handling a file threw, after which the thread goes on to the next file
+     *
+     * @param p chunk file
+     * @param e what was thrown
+     */
+    void failed(Path p, RuntimeException e);
+  }
+
+  /**
+   * Hands every chunk file in a folder to the handlers, one thread per handler, and waits for them
+   *
+   * @param dir      folder the world is saved in
+   * @param name     name of the threads, numbered
+   * @param handlers one handler per thread
+   * @throws IOException if the folder can't be listed
+   * @throws InterruptedException if interrupted while waiting for the threads
+   */
+  public static void stream(Path dir, String name, Handler[] handlers) throws IOException, InterruptedException {
+    BlockingQueue<Path> queue = new ArrayBlockingQueue<Path>(QUEUE_SIZE);
+    Thread[] workers = new Thread[handlers.length];
+    for (int t = 0; t < handlers.length; t++) {
+      Handler h = handlers[t];
+      workers[t] = new Thread(() -> work(queue, h), name + "-" + t);
+      workers[t].start();
+    }
+
+    // the directory stream hands out names one by one instead of listing the whole folder up front
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path p : stream) {
+        if (ChunkMigration.isChunkFile(p.toFile())) {
+          queue.put(p);
+        }
+      }
+    } finally {
+      for (int t = 0; t < handlers.length; t++) {
+        queue.put(END);
+      }
+      for (Thread w : workers) {
+        w.join();
+      }
+    }
+  }
+
+  /**
+   * Takes chunk files off the queue until the end marker
+   *
+   * @param queue   files left
+   * @param handler what to do with them
+   */
+  private static void work(BlockingQueue<Path> queue, Handler handler) {
+    try {
+      for (Path p = queue.take(); p != END; p = queue.take()) {
+        try {
+          handler.handle(p);
+        } catch (RuntimeException e) {
+          // keep taking files, or the folder listing would wait forever for room on the queue
+          handler.failed(p, e);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reads the start of a chunk file
+   *
+   * @param p      chunk file
+   * @param buffer buffer to read into; one byte longer than a text chunk, so that files that are too long show up
+   * @return bytes read, up to the length of the buffer
+   * @throws IOException if the file can't be read
+   */
+  public static int read(Path p, byte[] buffer) throws IOException {
+    int n = 0;
+    try (InputStream in = Files.newInputStream(p)) {
+      for (int r = 0; n < buffer.length && (r = in.read(buffer, n, buffer.length - n)) != -1; n += r) {
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Checks a chunk file read by read and puts its used tiles in a chunk. A damaged file still gives the tiles
+   * before the damage, like Chunk.load treats the missing tiles as unused, but bytes other than '0' and '1'
+   * are never counted as used
+   *
+   * @param buffer bytes of the file
+   * @param length number of bytes read
+   * @param chunk  chunk to fill in; whatever it held is cleared
+   * @return null if the file is a valid chunk, otherwise what is wrong with it
+   */
+  public static String parse(byte[] buffer, int length, Chunk chunk) {
+    chunk.clear();
+    int size = chunk.size;
+    int tiles = size * size;
+    if (Chunk.isPacked(buffer, length, size)) {
+      chunk.fromBytes(buffer, 1);
+      return null;
+    }
+
+    // a trailing line break is fine, anything else past the chunk is not
+    if (length == tiles + 1 && (buffer[tiles] == '\n' || buffer[tiles] == '\r')) {
+      length = tiles;
+    }
+
+    // find the first character that isn't a tile
+    int readable = 0;
+    while (readable < Math.min(length, tiles) && (buffer[readable] == '0' || buffer[readable] == '1')) {
+      if (buffer[readable] == '1') {
+        chunk.set(readable / size, readable % size);
+      }
+      readable++;
+    }
+
+    if (readable < tiles) {
+      return String.format("%s after %d of %d tiles", readable < length ? "bad character" : "truncated", readable,
+                           tiles);
+    }
+    if (length > tiles) {
+      return String.format("too long, %d tiles or more instead of %d", length, tiles);
+    }
+    return null;
+  }
+}
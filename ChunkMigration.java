@@ -0,0 +1,152 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+
+/**
+ * rewrites the chunk files of a saved world for a different chunk size, such as the 24x24 chunks of old
+ * saves, which can't be addressed with shifts and masks. used tiles keep their world coordinates, they are
+ * just regrouped into the new chunks
+ *
+ * the save is never changed in place. the migrated world, data file included, is written to a folder next to
+ * it, which is only swapped in once everything has been written. a crash or a failed write before the swap
+ * leaves the old save as it was, and recover finishes a swap a crash interrupted
+ */
+public class ChunkMigration {
+  /**
+   * Migrates every chunk file in a world folder and replaces its data file
+   *
+   * @param dir      folder the world is saved in
+   * @param fromSize chunk size the files were saved with
+   * @param toSize   new chunk size; must be a power of two
+   * @param dataName name of the data file in the folder
+   * @param data     what the data file should hold afterwards, with the new chunk size
+   * @throws IOException if a chunk can't be read or written; the save is left as it was
+   */
+  public static void migrate(String dir, int fromSize, int toSize, String dataName, String data)
+      throws IOException {
+    int shift = Integer.numberOfTrailingZeros(toSize);
+    int mask = toSize - 1;
+    HashMap<Integer, Chunk> migrated = new HashMap<Integer, Chunk>();
+    File world = new File(dir);
+    File temp = new File(dir + ".migrating");
+    File[] files = world.listFiles();
+    if (files == null) {
+      throw new IOException("can't list " + dir);
+    }
+
+    // read every old chunk and copy its used tiles into the new chunks
+    for (File f : files) {
+      if (!isChunkFile(f)) {
+        continue;
+      }
+      String[] coords = f.getName().split("_");
+      int x = Integer.parseInt(coords[0]);
+      int y = Integer.parseInt(coords[1]);
+      Chunk old = Chunk.read(dir, x, y, fromSize);
+      for (int i = 0; i < fromSize; i++) {
+        for (int j = 0; j < fromSize; j++) {
+          if (old.get(i, j)) {
+            // world coordinates of the tile, then where it lands with the new size
+            int tileX = x * fromSize + i;
+            int tileY = y * fromSize + j;
+            int key = Convert.twoToOne(Convert.chunkCoord(tileX, shift), Convert.chunkCoord(tileY, shift));
+            Chunk c = migrated.get(key);
+            if (c == null) {
+              c = new Chunk(toSize);
+              migrated.put(key, c);
+            }
+            c.set(Convert.tileCoord(tileX, mask), Convert.tileCoord(tileY, mask));
+          }
+        }
+      }
+    }
+
+    // write the new world next to the old one; whatever an earlier attempt left there is incomplete
+    delete(temp);
+    if (!temp.mkdirs()) {
+      throw new IOException("can't create " + temp);
+    }
+    // chunks without used tiles don't need a file; they load as blank chunks
+    for (int key : migrated.keySet()) {
+      migrated.get(key).write(temp.getPath(), Convert.oneToFirst(key), Convert.oneToSecond(key));
+    }
+    // anything else in the folder comes along, except the data file, which gets the new chunk size
+    for (File f : files) {
+      if (f.isFile() && !isChunkFile(f) && !f.getName().equals(dataName)) {
+        Files.copy(f.toPath(), new File(temp, f.getName()).toPath());
+      }
+    }
+    Files.write(new File(temp, dataName).toPath(), data.getBytes(StandardCharsets.UTF_8));
+
+    swap(dir);
+  }
+
+  /**
+   * Finishes or undoes a migration that a crash interrupted. Call before reading the save
+   *
+   * @param dir folder the world is saved in
+   * @throws IOException if the folders can't be moved back into place
+   */
+  public static void recover(String dir) throws IOException {
+    File world = new File(dir);
+    File temp = new File(dir + ".migrating");
+    File old = new File(dir + ".old");
+    if (!world.exists()) {
+      if (temp.isDirectory()) {
+        // the old save was moved aside, so the new one had been written completely
+        Files.move(temp.toPath(), world.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } else if (old.isDirectory()) {
+        Files.move(old.toPath(), world.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+    // the save in dir is whole now; a migrating folder never got swapped in and an old one was replaced
+    if (world.isDirectory()) {
+      delete(temp);
+      delete(old);
+    }
+  }
+
+  /**
+   * Replaces the world folder with the migrated one. Each move is atomic; recover handles a crash between them
+   *
+   * @param dir folder the world is saved in
+   * @throws IOException if a folder can't be moved
+   */
+  private static void swap(String dir) throws IOException {
+    File world = new File(dir);
+    File temp = new File(dir + ".migrating");
+    File old = new File(dir + ".old");
+    delete(old);
+    Files.move(world.toPath(), old.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    Files.move(temp.toPath(), world.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    delete(old);
+  }
+
+  /**
+   * Deletes a folder and the files in it, if it exists
+   *
+   * @param folder folder to delete
+   */
+  private static void delete(File folder) {
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  /**
+   * Checks if a file is a chunk file, named x_y
+   *
+   * @param f file to check
+   * @return whether it holds a chunk
+   */
+  public static boolean isChunkFile(File f) {
+    return f.isFile() && f.getName().matches("-?\\d+_-?\\d+");
+  }
+}
@@ -0,0 +1,83 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Sweeps over the possible chunk sizes and prints how each one does for saving, loading, disk space,
+ * and memory, on the same explored area of the same world
+ *
+ * run from the command line: java ChunkSizeBenchmark [explored width in tiles]
+ */
+public class ChunkSizeBenchmark {
+  private static final int[] SIZES = {8, 16, 32, 64, 128};
+  private static final float USED_FRACTION = 0.05f;  // share of explored tiles that have been used
+
+  /**
+   * Runs the sweep
+   *
+   * @param args width of the explored square in tiles (rounded to a multiple of the largest chunk size)
+   * @throws Exception if the scratch folders can't be made
+   */
+  public static void main(String[] args) throws Exception {
+    int explored = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+    explored = Math.max(explored / 128, 1) * 128;
+
+    System.out.println(" size | chunks |  save ms |  load ms |  disk KB | heap KB | tiles in view");
+    for (int size : SIZES) {
+      File dir = Files.createTempDirectory("chunks" + size).toFile();
+      int count = explored / size;
+      // same used tiles for every size
+      Random r = new Random(1);
+      Chunk[][] chunks = new Chunk[count][count];
+      for (int i = 0; i < count; i++) {
+        for (int j = 0; j < count; j++) {
+          chunks[i][j] = new Chunk(size);
+        }
+      }
+      for (int n = (int) (explored * explored * USED_FRACTION); n > 0; n--) {
+        int x = r.nextInt(explored);
+        int y = r.nextInt(explored);
+        chunks[x / size][y / size].set(x % size, y % size);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        for (int j = 0; j < count; j++) {
+          chunks[i][j].save(dir.getPath(), i, j);
+        }
+      }
+      double saveMs = (System.nanoTime() - start) / 1e6;
+
+      start = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        for (int j = 0; j < count; j++) {
+          Chunk.load(dir.getPath(), i, j, size);
+        }
+      }
+      double loadMs = (System.nanoTime() - start) / 1e6;
+
+      long bytes = 0;
+      for (File f : dir.listFiles()) {
+        bytes += f.length();
+        f.delete();
+      }
+      dir.delete();
+
+      // one bit per tile in a long[] with a 16 byte header and 8 byte alignment, plus the Chunk itself
+      long perChunk = align(16 + 8L * ((size * size + 63) / 64)) + 24;
+      // chunks loaded for the zoomed out 400x400 view, which is the most World.loadChunks ever keeps
+      int view = (int) Math.ceil(400 / 25f / size) + 2;
+
+      System.out.println(String.format("%5d | %6d | %8.1f | %8.1f | %8d | %7d | %d",
+                                       size, count * count, saveMs, loadMs, bytes / 1024,
+                                       perChunk * count * count / 1024, view * view * size * size));
+    }
+  }
+
+  /**
+   * Rounds a size up to the 8 bytes that objects are aligned to
+   */
+  private static long align(long n) {
+    return (n + 7) / 8 * 8;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * counts of every tile type in a chunk, along with 2D prefix sums so that the number of tiles of a type
+ * in any rectangle of the chunk can be found with four lookups. kept up to date as tiles get used
+ */
+public class ChunkSummary {
+  private static final int TYPES = Tile.values().length;
+
+  private int size;          // chunk size the summary was built for
+  private int[] counts;      // number of tiles of each type in the whole chunk, indexed by Tile.ordinal()
+  // prefix[type][(i * (size + 1)) + j] = tiles of that type with x < i and y < j. shorts, which is why World
+  // limits chunks to World.MAX_CHUNK_SIZE
+  private short[][] prefix;
+
+  /**
+   * Builds the summary of a chunk from the seed and its used tiles
+   *
+   * @param w  world the chunk belongs to
+   * @param cx chunk x coordinate
+   * @param cy chunk y coordinate
+   */
+  public ChunkSummary(World w, int cx, int cy) {
+    size = w.chunkSize;
+    counts = new int[TYPES];
+    prefix = new short[TYPES][(size + 1) * (size + 1)];
+    Chunk chunk = w.peekChunk(cx, cy);
+    byte[] terrain = w.terrain(cx, cy);
+
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        Tile tile = chunk.get(i, j) ? Tile.USED : World.TILES[terrain[i * size + j]];
+        counts[tile.ordinal()]++;
+        // standard 2D prefix sum: this cell plus the sums above and to the left, minus their overlap
+        for (int t = 0; t < TYPES; t++) {
+          prefix[t][index(i + 1, j + 1)] = (short) (prefix[t][index(i, j + 1)] + prefix[t][index(i + 1, j)]
+                                                  - prefix[t][index(i, j)] + (tile.ordinal() == t ? 1 : 0));
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets how many tiles of a type are in the whole chunk
+   *
+   * @param type tile type
+   * @return number of tiles
+   */
+  public int count(Tile type) {
+    return counts[type.ordinal()];
+  }
+
+  /**
+   * Gets how many tiles of a type are in a rectangle of the chunk
+   *
+   * @param type   tile type
+   * @param left   first in-chunk x coordinate (inclusive)
+   * @param top    first in-chunk y coordinate (inclusive)
+   * @param right  last in-chunk x coordinate (exclusive)
+   * @param bottom last in-chunk y coordinate (exclusive)
+   * @return number of tiles
+   */
+  public int count(Tile type, int left, int top, int right, int bottom) {
+    short[] p = prefix[type.ordinal()];
+    return p[index(right, bottom)] - p[index(left, bottom)] - p[index(right, top)] + p[index(left, top)];
+  }
+
+  /**
+   * Moves a tile from its generated type to USED
+   *
+   * @param i    in-chunk x coordinate
+   * @param j    in-chunk y coordinate
+   * @param type what the tile was before it was used
+   */
+  public void markUsed(int i, int j, Tile type) {
+    counts[type.ordinal()]--;
+    counts[Tile.USED.ordinal()]++;
+    short[] from = prefix[type.ordinal()];
+    short[] to = prefix[Tile.USED.ordinal()];
+    // every prefix sum whose rectangle contains the tile changes by one
+    for (int a = i + 1; a <= size; a++) {
+      for (int b = j + 1; b <= size; b++) {
+        from[index(a, b)]--;
+        to[index(a, b)]++;
+      }
+    }
+  }
+
+  /**
+   * Converts prefix sum coordinates to an index in the flattened array
+   *
+   * @param i x coordinate, 0 to size
+   * @param j y coordinate, 0 to size
+   * @return array index
+   */
+  private int index(int i, int j) {
+    return i * (size + 1) + j;
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * an action requested by the player, queued by the render thread and carried out by the simulation thread
+ */
+public class Command {
+  /**
+   * the kinds of actions
+   */
+  public enum Type {
+    LAUNCH,   // launch the ball in a direction
+    BUY,      // buy an upgrade
+    FOOD,     // buy one food
+    ZOOM,     // change the zoom level the view is loaded and captured for
+    OVERVIEW, // open the overview at a number of pixels per tile, or close it with 0
+    SAVE,     // save the game
+    NEW_GAME  // start a new game
+  }
+
+  public Type type;   // what to do
+  public float x;     // direction of a launch, the zoom level, or the overview's pixels per tile
+  public float y;
+  public int index;   // which upgrade to buy
+
+  /**
+   * Constructs a new Command
+   *
+   * @param type  what to do
+   * @param x     direction x or zoom level
+   * @param y     direction y
+   * @param index upgrade index
+   */
+  public Command(Type type, float x, float y, int index) {
+    this.type = type; this.x = x; this.y = y; this.index = index;
+  }
+}
@@ -5,23 +5,25 @@ public class Convert {
   /**
    * Converts a tile coordinate to a chunk coordinate (which chunk the tile is in)
    *
-   * @param n The coordinate to be converted
+   * @param n     The coordinate to be converted
+   * @param shift log2 of the chunk size
    * @return The chunk coordinate
    */
-  public static int chunkCoord(int n) {
-    // Divide the value by the chunk size and return the floor of the result
-    return (int) Math.floor((float) n / Chunk.chunkSize);
+  public static int chunkCoord(int n, int shift) {
+    // chunk sizes are powers of two, so an arithmetic shift divides and rounds down (also for negatives)
+    return n >> shift;
   }
 
   /**
    * Converts a tile coordinate to an in-chunk tile coordinate (where within the chunk the tile is in)
    *
-   * @param n The coordinate to be converted
+   * @param n    The coordinate to be converted
+   * @param mask chunk size minus one
    * @return The in-chunk tile coordinate
    */
-  public static int tileCoord(int n) {
-    // Apply modulo operation with chunk size and ensure positive result
-    return (n % Chunk.chunkSize + Chunk.chunkSize) % Chunk.chunkSize;
+  public static int tileCoord(int n, int mask) {
+    // masking off the low bits is a modulo that is always positive
+    return n & mask;
   }
 
   /**
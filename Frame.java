@@ -0,0 +1,122 @@
+/**
+ * everything the renderer needs to draw one frame, copied out of the simulation at the end of a tick.
+ * once published a frame is never changed until the renderer hands it back
+ */
+public class Frame {
+  public long tick;               // simulation tick the frame was captured at
+  public int game;                // counts new games, so old frames can be told apart after starting over
+  public int seed;                // world seed
+  public Vector p = new Vector(); // ball position
+  public Vector v = new Vector(); // ball velocity
+  public float money;             // player stats
+  public float income;
+  public float food;
+  public float[] factors = new float[4];    // current factor of each upgrade
+  public float[] prices = new float[4];     // current price of each upgrade
+  public int[] timesBought = new int[4];    // how many times each upgrade has been bought
+  public boolean won;             // whether the game is won (ball at rest with enough income)
+  public boolean lost;            // whether the game is lost (ball at rest without food or money)
+  public Vector foodHint;         // closest food when food is about to run out, or null
+  public float hitsPerLaunch;     // fresh tiles the player hits per launch this game, for the upgrade planner
+  public UpgradePlanner.Plan advice;  // upgrades to buy, planned when the ball last stopped; never changed once made
+
+  // tiles in view
+  public float zoom;              // zoom level the tiles were captured for
+  public int left;                // coordinates of the top left tile
+  public int top;
+  public int columns;             // how many tiles wide and high the view is
+  public int rows;
+  public Tile[] tiles = new Tile[0];    // tile types, column by column
+  public byte[] buildings = new byte[0];  // building image of each tile
+
+  // chunks in the overview, while it's open
+  public int overview;            // pixels per tile, or 0 when the overview is closed
+  public int chunkSize;           // width and height of a chunk in tiles
+  public int overviewLeft;        // chunk coordinates of the top left chunk
+  public int overviewTop;
+  public int overviewColumns;     // how many chunks wide and high the overview is
+  public int overviewRows;
+  // summary of each chunk from Minimap, column by column, or null if it isn't built yet. shared between frames,
+  // so never changed
+  public int[][] overviewChunks = new int[0][];
+
+  /**
+   * Makes room for a view of a certain size, reusing the arrays when they are big enough
+   *
+   * @param columns tiles wide
+   * @param rows    tiles high
+   */
+  public void resize(int columns, int rows) {
+    this.columns = columns;
+    this.rows = rows;
+    if (tiles.length < columns * rows) {
+      tiles = new Tile[columns * rows];
+      buildings = new byte[columns * rows];
+    }
+  }
+
+  /**
+   * Makes room for an overview of a certain size, reusing the array when it is big enough
+   *
+   * @param columns chunks wide
+   * @param rows    chunks high
+   */
+  public void resizeOverview(int columns, int rows) {
+    overviewColumns = columns;
+    overviewRows = rows;
+    if (overviewChunks.length < columns * rows) {
+      overviewChunks = new int[columns * rows][];
+    }
+  }
+
+  /**
+   * Captures the tiles in view around the ball position of the frame
+   *
+   * @param w      world to capture from
+   * @param width  screen width
+   * @param height screen height
+   * @param zoom   pixels per tile
+   */
+  public void view(World w, int width, int height, float zoom) {
+    // boundaries of which tiles need to be drawn
+    this.zoom = zoom;
+    left = (int) (Math.floor(p.x) - Math.ceil(width / 2 / zoom));
+    top = (int) (Math.floor(p.y) - Math.ceil(height / 2 / zoom));
+    int right = (int) (Math.floor(p.x) + Math.ceil(width / 2 / zoom) + 2);
+    int bottom = (int) (Math.floor(p.y) + Math.ceil(height / 2 / zoom) + 2);
+    resize(right - left, bottom - top);
+    int n = 0;
+    for (int x = left; x < right; x++) {
+      for (int y = top; y < bottom; y++) {
+        tiles[n] = w.getTile(x, y);
+        buildings[n] = (byte) w.getBuilding(x, y);
+        n++;
+      }
+    }
+  }
+
+  /**
+   * Gets a tile in view
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   * @return the tile, or AIR if it isn't in view
+   */
+  public Tile getTile(int x, int y) {
+    if (x < left || y < top || x >= left + columns || y >= top + rows) {
+      return Tile.AIR;
+    }
+    return tiles[(x - left) * rows + y - top];
+  }
+
+  /**
+   * Gets the building image of a tile in view
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   * @return index of the building image
+   */
+  public int getBuilding(int x, int y) {
+    return buildings[(x - left) * rows + y - top];
+  }
+}
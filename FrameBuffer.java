@@ -0,0 +1,44 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * lock-free triple buffer between the simulation and the renderer. the simulation always has a frame of
+ * its own to fill, the renderer always has a frame of its own to draw, and the third frame is the latest
+ * published one. publishing and taking are a single atomic swap each, so neither side ever waits
+ */
+public class FrameBuffer {
+  private static final int FRESH = 4;  // flag set in the state when the middle frame hasn't been taken yet
+
+  private Frame[] frames = {new Frame(), new Frame(), new Frame()};
+  private int back = 0;                // frame owned by the simulation
+  private int front = 1;               // frame owned by the renderer
+  private AtomicInteger middle = new AtomicInteger(2);  // index of the published frame, plus the FRESH flag
+
+  /**
+   * Gets the frame the simulation should fill next. Only called by the simulation thread
+   *
+   * @return the back frame
+   */
+  public Frame back() {
+    return frames[back];
+  }
+
+  /**
+   * Publishes the back frame and takes the old middle frame as the new back frame. Only called by the
+   * simulation thread
+   */
+  public void publish() {
+    back = middle.getAndSet(back | FRESH) & 3;
+  }
+
+  /**
+   * Gets the latest published frame, swapping it in if there is a new one. Only called by the render thread
+   *
+   * @return the newest frame
+   */
+  public Frame latest() {
+    if ((middle.get() & FRESH) != 0) {
+      front = middle.getAndSet(front) & 3;
+    }
+    return frames[front];
+  }
+}
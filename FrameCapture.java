@@ -0,0 +1,292 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * saves rendered frames without making the animation thread wait for encoding. capture() only copies the pixels
+ * into one of a fixed ring of buffers; a pool of encoder threads turns them into files in the background
+ *
+ * when every buffer is still being encoded, capture() waits for one to come back (or drops the frame, if asked
+ * to) instead of queuing more and more frames in memory
+ *
+ * frames are written either as a numbered PNG sequence, or as one Y4M video (uncompressed 4:4:4, which players
+ * and ffmpeg read directly)
+ */
+public class FrameCapture {
+  /**
+   * how the frames are saved
+   */
+  public enum Format {
+    PNG,
+    Y4M
+  }
+
+  private String dir;         // folder the frames are written to
+  private Format format;
+  private int width;
+  private int height;
+  private boolean dropWhenBusy;  // drop frames instead of waiting when every buffer is in use
+  private BlockingQueue<Slot> free;  // buffers that can be captured into
+  private ExecutorService encoders;
+  private OutputStream video;    // the Y4M file
+  private long nextWrite;        // Y4M frames have to be written in order; the next one to write
+  private long sequence;         // frames handed to the encoders so far
+
+  // metrics
+  private long captured;
+  private long dropped;
+  private long waitNanos;        // time capture() spent waiting for a free buffer
+  private long copyNanos;        // time capture() spent copying pixels
+  // time the encoders spent, summed over all of them; an adder, since they all add to it at once
+  private final LongAdder encodeNanos = new LongAdder();
+  private volatile IOException error; // first error an encoder hit
+
+  /**
+   * one buffer of the ring: the copied pixels, and room for the converted bytes
+   */
+  private static class Slot {
+    int[] pixels;
+    byte[] bytes;
+    long index;   // order the frame was captured in
+    long frame;   // frame number, for the file name
+  }
+
+  /**
+   * Starts capturing into a folder
+   *
+   * @param dir          folder to write to; created if needed
+   * @param format       PNG sequence or Y4M video
+   * @param width        width of the frames
+   * @param height       height of the frames
+   * @param frameRate    frames per second, recorded in the video
+   * @param buffers      number of frames that can be waiting for the encoders
+   * @param threads      number of encoder threads
+   * @param dropWhenBusy whether to drop frames instead of waiting when all buffers are in use
+   * @throws IOException if the folder or video can't be created
+   */
+  public FrameCapture(String dir, Format format, int width, int height, int frameRate, int buffers, int threads,
+                      boolean dropWhenBusy) throws IOException {
+    this.dir = dir;
+    this.format = format;
+    this.width = width;
+    this.height = height;
+    this.dropWhenBusy = dropWhenBusy;
+    new File(dir).mkdirs();
+
+    free = new ArrayBlockingQueue<Slot>(buffers);
+    for (int i = 0; i < buffers; i++) {
+      Slot s = new Slot();
+      s.pixels = new int[width * height];
+      // PNGs are converted a scanline at a time, video frames all at once
+      s.bytes = new byte[format == Format.PNG ? PngWriter.rowBytes(width) : width * height * 3];
+      free.add(s);
+    }
+    encoders = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "frame encoder");
+      t.setDaemon(true);
+      return t;
+    });
+
+    if (format == Format.Y4M) {
+      video = new BufferedOutputStream(new FileOutputStream(new File(dir, "capture.y4m")), 1 << 20);
+      video.write(String.format("YUV4MPEG2 W%d H%d F%d:1 Ip A1:1 C444\n", width, height, frameRate).getBytes());
+    }
+  }
+
+  /**
+   * Captures a frame. Only copies the pixels; encoding happens on the encoder threads
+   *
+   * @param pixels ARGB pixels of the frame, such as PApplet.pixels after loadPixels()
+   * @param frame  frame number
+   * @return false if the frame was dropped because every buffer was in use
+   */
+  public boolean capture(int[] pixels, long frame) {
+    long start = System.nanoTime();
+    Slot s = free.poll();
+    if (s == null) {
+      if (dropWhenBusy) {
+        dropped++;
+        return false;
+      }
+      try {
+        // back-pressure: wait for an encoder to hand a buffer back
+        s = free.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        dropped++;
+        return false;
+      }
+    }
+    long copied = System.nanoTime();
+    waitNanos += copied - start;
+    System.arraycopy(pixels, 0, s.pixels, 0, width * height);
+    copyNanos += System.nanoTime() - copied;
+    s.index = sequence++;
+    s.frame = frame;
+    captured++;
+    Slot slot = s;
+    encoders.execute(() -> encode(slot));
+    return true;
+  }
+
+  /**
+   * Encodes a frame and puts its buffer back in the ring. Runs on an encoder thread. Whatever goes wrong, the
+   * buffer always comes back and a video frame always gives up its turn, or capture() and the encoders of the
+   * frames after it would wait forever
+   *
+   * @param s buffer holding the frame
+   */
+  private void encode(Slot s) {
+    long start = System.nanoTime();
+    try {
+      if (format == Format.PNG) {
+        String name = String.format("frame_%06d.png", s.frame);
+        try (OutputStream file = new BufferedOutputStream(new FileOutputStream(new File(dir, name)), 1 << 16)) {
+          PngWriter png = new PngWriter(file, width, height, Deflater.BEST_SPEED);
+          boolean done = false;
+          try {
+            png.writeRows(s.pixels, 0, height, s.bytes);
+            png.close();
+            done = true;
+          } finally {
+            if (!done) {
+              png.abort();
+            }
+          }
+        }
+      } else {
+        // full resolution YCbCr (BT.601), converted in parallel but written in order
+        for (int i = 0, n = width * height; i < n; i++) {
+          int c = s.pixels[i];
+          int r = (c >> 16) & 0xFF;
+          int g = (c >> 8) & 0xFF;
+          int b = c & 0xFF;
+          s.bytes[i] = (byte) ((66 * r + 129 * g + 25 * b + 128 >> 8) + 16);
+          s.bytes[n + i] = (byte) ((-38 * r - 74 * g + 112 * b + 128 >> 8) + 128);
+          s.bytes[2 * n + i] = (byte) ((112 * r - 94 * g - 18 * b + 128 >> 8) + 128);
+        }
+        synchronized (this) {
+          while (nextWrite < s.index) {
+            wait();
+          }
+          video.write("FRAME\n".getBytes());
+          video.write(s.bytes);
+        }
+      }
+    } catch (IOException e) {
+      if (error == null) {
+        error = e;
+      }
+    } catch (RuntimeException e) {
+      if (error == null) {
+        error = new IOException("frame " + s.frame + " couldn't be encoded", e);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (format == Format.Y4M) {
+        written(s.index);
+      }
+      encodeNanos.add(System.nanoTime() - start);
+      free.add(s);
+    }
+  }
+
+  /**
+   * Lets the next video frame be written, once every frame before this one is done. A frame that failed
+   * before its turn still waits for it, so the frames before it aren't skipped
+   *
+   * @param index order the frame was captured in
+   */
+  private synchronized void written(long index) {
+    boolean interrupted = false;
+    while (nextWrite < index) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    nextWrite = Math.max(nextWrite, index + 1);
+    notifyAll();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Waits for every captured frame to be written and closes the files
+   *
+   * @throws IOException if any frame couldn't be written
+   */
+  public void close() throws IOException {
+    encoders.shutdown();
+    try {
+      encoders.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (video != null) {
+      video.close();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Describes how capturing went
+   *
+   * @return metrics as text
+   */
+  @Override
+  public String toString() {
+    return String.format("%d frames captured to %s, %d dropped; per frame: %.2f ms copying, %.2f ms waiting for a "
+                         + "buffer, %.2f ms encoding (on the encoder threads)",
+                         captured, dir, dropped, captured == 0 ? 0.0 : copyNanos / 1e6 / captured,
+                         captured == 0 ? 0.0 : waitNanos / 1e6 / captured,
+                         captured == 0 ? 0.0 : encodeNanos.sum() / 1e6 / captured);
+  }
+
+  /**
+   * Captures synthetic frames as fast as possible and prints how long capturing and encoding took
+   *
+   * @param args optionally the format (png or y4m), number of frames, encoder threads, and folder
+   * @throws Exception if the frames can't be written
+   */
+  public static void main(String[] args) throws Exception {
+    Format format = args.length > 0 ? Format.valueOf(args[0].toUpperCase()) : Format.PNG;
+    int frames = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    String dir = args.length > 3 ? args[3] : "captures/benchmark";
+
+    // synthetic 400x400 frames with some structure, so that PNG compression has something to do
+    int width = 400;
+    int height = 400;
+    int[] pixels = new int[width * height];
+    FrameCapture capture = new FrameCapture(dir, format, width, height, 60, 8, threads, false);
+    long start = System.nanoTime();
+    for (int f = 0; f < frames; f++) {
+      for (int i = 0; i < pixels.length; i++) {
+        int x = i % width;
+        int y = i / width;
+        pixels[i] = 0xFF000000 | ((x + f) / 25 % 2 == 0 ? 0x303030 : 0xE04040) ^ ((y + 2 * f) / 25 % 2) * 0x4090F0;
+      }
+      capture.capture(pixels, f);
+    }
+    capture.close();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(capture);
+    System.out.println(String.format("%d frames in %.2f s: %.1f frames/s with %d encoder threads", frames, seconds,
+                                     frames / seconds, threads));
+  }
+}
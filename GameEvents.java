@@ -0,0 +1,116 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the things that can make the game stutter: chunk files being read and
+ * written, chunks leaving the cache, collisions, and the phases of each frame. they are all off unless a
+ * recording turns them on, which bounceback.jfc does:
+ *
+ *   java -XX:StartFlightRecording:settings=bounceback.jfc,filename=game.jfr Main
+ *
+ * when a recording doesn't ask for them, begin/commit do nothing and the JIT removes the events entirely
+ */
+public class GameEvents {
+  @Name("bounceback.ChunkLoad")
+  @Label("Chunk Load")
+  @Category({"Bounce Back", "Chunks"})
+  @Description("A chunk read from its file")
+  @Enabled(false)
+  @StackTrace(false)
+  public static class ChunkLoad extends Event {
+    @Label("Chunk X")
+    public int x;
+    @Label("Chunk Y")
+    public int y;
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+    @Label("Found")
+    @Description("Whether the chunk had a file; chunks without one load blank")
+    public boolean found;
+  }
+
+  @Name("bounceback.ChunkSave")
+  @Label("Chunk Save")
+  @Category({"Bounce Back", "Chunks"})
+  @Description("A chunk written to its file")
+  @Enabled(false)
+  @StackTrace(false)
+  public static class ChunkSave extends Event {
+    @Label("Chunk X")
+    public int x;
+    @Label("Chunk Y")
+    public int y;
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+  }
+
+  @Name("bounceback.ChunkEvict")
+  @Label("Chunk Evict")
+  @Category({"Bounce Back", "Chunks"})
+  @Description("A chunk dropped from the cache, including saving it if it was dirty")
+  @Enabled(false)
+  @StackTrace(false)
+  public static class ChunkEvict extends Event {
+    @Label("Chunk X")
+    public int x;
+    @Label("Chunk Y")
+    public int y;
+    @Label("Bytes Freed")
+    @DataAmount
+    public long bytes;
+    @Label("Saved")
+    public boolean saved;
+  }
+
+  @Name("bounceback.Collision")
+  @Label("Collision")
+  @Category({"Bounce Back", "Physics"})
+  @Description("The ball bouncing off a tile")
+  @Enabled(false)
+  @StackTrace(false)
+  public static class Collision extends Event {
+    @Label("Tile")
+    public String tile;
+    @Label("Tile X")
+    public int x;
+    @Label("Tile Y")
+    public int y;
+    @Label("Speed Before")
+    public float speedBefore;
+    @Label("Speed After")
+    public float speedAfter;
+  }
+
+  @Name("bounceback.FramePhase")
+  @Label("Frame Phase")
+  @Category({"Bounce Back", "Frames"})
+  @Description("One part of drawing a frame or simulating a tick")
+  @Enabled(false)
+  @StackTrace(false)
+  public static class FramePhase extends Event {
+    @Label("Phase")
+    public String phase;
+    @Label("Frame")
+    @Description("Frame number for drawing, tick number for the simulation")
+    public long frame;
+
+    /**
+     * Constructs a phase event; call begin() and commit() around the phase
+     *
+     * @param phase name of the phase
+     * @param frame frame or tick number
+     */
+    public FramePhase(String phase, long frame) {
+      this.phase = phase;
+      this.frame = frame;
+    }
+  }
+}
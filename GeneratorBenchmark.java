@@ -0,0 +1,85 @@
+import java.util.Random;
+
+/**
+ * Compares the world generators: how many tiles a second each one makes, and whether the tiles come out in
+ * the proportions World asks for. The proportions are checked with a chi-square test over a sample of random
+ * coordinates, both near the spawn and in the billions where the legacy pairing function overflows, and for
+ * seed 0 as well as random seeds
+ *
+ * run from the command line: java GeneratorBenchmark [tiles per run]
+ */
+public class GeneratorBenchmark {
+  private static final WorldGenerator[] GENERATORS = {WorldGenerator.LEGACY, WorldGenerator.DEFAULT};
+  private static final Tile[] TYPES = {Tile.BAD, Tile.MONEY, Tile.INCOME, Tile.FOOD, Tile.AIR};
+  private static final int RUNS = 5;             // timed runs per generator, after as many warm up runs
+  private static final double CRITICAL = 18.47;  // chi-square with 4 degrees of freedom at p = 0.001
+  private static int sink;                       // keeps the JIT from throwing away the generated tiles
+
+  /**
+   * Runs the comparison
+   *
+   * @param args number of tiles generated per run
+   */
+  public static void main(String[] args) {
+    int tiles = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+
+    System.out.println("generator | Mtiles/s | chi-square near | far | seed 0");
+    for (WorldGenerator g : GENERATORS) {
+      // warm up, then time a square of tiles the way the game walks them
+      int side = (int) Math.sqrt(tiles);
+      double best = 0;
+      for (int run = 0; run < RUNS * 2; run++) {
+        long start = System.nanoTime();
+        int h = 0;
+        for (int x = 0; x < side; x++) {
+          for (int y = 0; y < side; y++) {
+            h += g.generate(12345 + run, x, y).ordinal();
+          }
+        }
+        sink += h;
+        double rate = (double) side * side / (System.nanoTime() - start) * 1e3;
+        if (run >= RUNS) {
+          best = Math.max(best, rate);
+        }
+      }
+
+      double near = chiSquare(g, new Random(1), 1_000, tiles);
+      double far = chiSquare(g, new Random(2), 1_000_000_000, tiles);
+      double zero = chiSquare(g, null, 1_000, tiles);
+      System.out.println(String.format("%9s | %8.1f | %13.1f%s | %.1f%s | %.1f%s", g.getName(), best,
+                                       near, near > CRITICAL ? "!" : " ", far, far > CRITICAL ? "!" : "",
+                                       zero, zero > CRITICAL ? "!" : ""));
+    }
+    System.out.println("! fails at p = 0.001 (critical value " + CRITICAL + ")");
+  }
+
+  /**
+   * Measures how far a generator's tiles are from World's proportions
+   *
+   * @param g     generator to check
+   * @param r     picks the coordinates and seeds; null to use seed 0 everywhere
+   * @param reach coordinates are picked between -reach and reach
+   * @param tiles number of tiles in the sample
+   * @return Pearson's chi-square statistic over the five tile types
+   */
+  private static double chiSquare(WorldGenerator g, Random r, int reach, int tiles) {
+    Random coords = r == null ? new Random(3) : r;
+    long[] counts = new long[Tile.values().length];
+    for (int i = 0; i < tiles; i++) {
+      int seed = r == null ? 0 : r.nextInt();
+      int x = coords.nextInt(2 * reach + 1) - reach;
+      int y = coords.nextInt(2 * reach + 1) - reach;
+      counts[g.generate(seed, x, y).ordinal()]++;
+    }
+
+    double chi = 0;
+    double air = 1;
+    for (Tile t : TYPES) {
+      double p = t == Tile.AIR ? air : World.proportion(t);
+      air -= p;
+      double expected = p * tiles;
+      chi += (counts[t.ordinal()] - expected) * (counts[t.ordinal()] - expected) / expected;
+    }
+    return chi;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * generates tiles from a 64-bit hash of the seed and coordinates. the coordinates are packed into one long
+ * without any arithmetic that can overflow, mixed with the seed through the SplitMix64 finaliser, and the
+ * top 32 bits are compared against integer thresholds, which gives World's proportions to within 2^-32
+ */
+public class HashGenerator implements WorldGenerator {
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;  // 2^64 / golden ratio, SplitMix64's increment
+
+  // cumulative proportions of bad, $$$, wage, and food tiles as fractions of 2^32; anything above is air
+  private static final long[] THRESHOLDS = new long[4];
+  private static final Tile[] TYPES = {Tile.BAD, Tile.MONEY, Tile.INCOME, Tile.FOOD};
+
+  static {
+    double total = 0;
+    for (int i = 0; i < 4; i++) {
+      total += World.proportion(TYPES[i]);
+      THRESHOLDS[i] = Math.round(total * (1L << 32));
+    }
+  }
+
+  public Tile generate(int seed, int x, int y) {
+    // every (x, y) is a different long, and every seed (0 included) shifts them somewhere different
+    long key = (long) x << 32 | (y & 0xFFFFFFFFL);
+    long h = mix(key + mix(seed * GOLDEN + GOLDEN));
+
+    // unsigned top 32 bits against the thresholds, no floats or modulo
+    long m = h >>> 32;
+    for (int i = 0; i < 4; i++) {
+      if (m < THRESHOLDS[i]) {
+        return TYPES[i];
+      }
+    }
+    return Tile.AIR;
+  }
+
+  /**
+   * The SplitMix64 finaliser: every input bit affects every output bit
+   *
+   * @param z value to mix
+   * @return mixed value
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  public String getName() {
+    return "splitmix";
+  }
+}
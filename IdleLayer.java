@@ -0,0 +1,127 @@
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * the world and ball as drawn while the ball is resting, kept as an image. aiming only moves the aim line, so
+ * while the player aims the frame is just this image with the HUD and aim line drawn over it, instead of every
+ * tile again. when the mouse, stats, and food hint haven't changed either, the frame isn't drawn at all and
+ * the window keeps showing the last one
+ */
+public class IdleLayer {
+  private PApplet app;         // PApplet to draw with
+  private PImage layer;        // world and ball, or null until the ball comes to rest
+  // what the layer was drawn for
+  private float x;
+  private float y;
+  private float zoom;
+  private int game;
+  private boolean software;
+  // what the last frame drawn showed over it
+  private int mouseX = -1;
+  private int mouseY = -1;
+  private float money = Float.NaN;
+  private float income = Float.NaN;
+  private float food = Float.NaN;
+  private float hintX = Float.NaN;
+  private float hintY = Float.NaN;
+  private boolean dirty = true;  // something the frame doesn't show changed, such as a menu or a key
+
+  // metrics
+  private long stored;         // times the layer was drawn from scratch and kept
+  private long reused;         // frames drawn over the kept layer
+  private long skipped;        // frames not drawn at all
+
+  /**
+   * Constructs a new IdleLayer
+   *
+   * @param app PApplet instance
+   */
+  public IdleLayer(PApplet app) {
+    this.app = app;
+  }
+
+  /**
+   * Checks if the kept layer shows the world of a frame
+   *
+   * @param f        frame about to be drawn
+   * @param software whether the world is drawn with the software renderer
+   * @return whether the layer can be drawn instead of the world and ball
+   */
+  public boolean has(Frame f, boolean software) {
+    return layer != null && f.p.x == x && f.p.y == y && f.zoom == zoom && f.game == game
+           && software == this.software;
+  }
+
+  /**
+   * Keeps what has been drawn so far, the world and the ball, as the layer
+   *
+   * @param f        frame that was drawn
+   * @param software whether the world was drawn with the software renderer
+   */
+  public void store(Frame f, boolean software) {
+    layer = app.get();
+    x = f.p.x;
+    y = f.p.y;
+    zoom = f.zoom;
+    game = f.game;
+    this.software = software;
+    stored++;
+  }
+
+  /**
+   * Draws the kept layer over the whole window, in place of clearing it and drawing the world
+   */
+  public void restore() {
+    app.background(layer);
+    reused++;
+  }
+
+  /**
+   * Checks if a resting frame would look exactly like the last one drawn, and remembers what it shows
+   *
+   * @param f        frame about to be drawn
+   * @param software whether the world is drawn with the software renderer
+   * @param mouseX   mouse x, where the aim line ends
+   * @param mouseY   mouse y
+   * @return whether the frame can be skipped
+   */
+  public boolean unchanged(Frame f, boolean software, int mouseX, int mouseY) {
+    float hx = f.foodHint == null ? Float.NaN : f.foodHint.x;
+    float hy = f.foodHint == null ? Float.NaN : f.foodHint.y;
+    // NaN never equals itself, so compare the hint's bits
+    boolean same = !dirty && has(f, software) && mouseX == this.mouseX && mouseY == this.mouseY
+                   && f.money == money && f.income == income && f.food == food
+                   && Float.floatToIntBits(hx) == Float.floatToIntBits(hintX)
+                   && Float.floatToIntBits(hy) == Float.floatToIntBits(hintY);
+    this.mouseX = mouseX;
+    this.mouseY = mouseY;
+    money = f.money;
+    income = f.income;
+    food = f.food;
+    hintX = hx;
+    hintY = hy;
+    dirty = false;
+    if (same) {
+      skipped++;
+    }
+    return same;
+  }
+
+  /**
+   * Makes the next frame be drawn, after a change the frames don't show
+   */
+  public void invalidate() {
+    dirty = true;
+  }
+
+  /**
+   * Describes how often frames were skipped or drawn over the layer
+   *
+   * @return metrics as text
+   */
+  @Override
+  public String toString() {
+    return String.format("idle: %d frames skipped, %d drawn over the cached world, %d world redraws kept", skipped,
+                         reused, stored);
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * the original world generator, kept exactly as it was so that worlds saved with it load the same. it has some
+ * known problems, which is why new worlds use HashGenerator: the pairing function overflows for coordinates in
+ * the billions, seed 0 makes every tile air, and the modulo at the end doesn't give exactly the proportions
+ */
+public class LegacyGenerator implements WorldGenerator {
+  // proportions of tiles that are bad tiles, $$$ tiles, wage tiles, and food tiles respectfully
+  // all the rest are air. these are frozen here even if World's change, since saved worlds depend on them
+  private static final float[] percentages = {0.08f, 0.1f, 0.1f, 0.1f};
+
+  public Tile generate(int seed, int x, int y) {
+    // mapping two numbers into one to feed into the PRNG algorithm from:
+    // https://stackoverflow.com/questions/919612/mapping-two-integers-to-one-in-a-unique-and-deterministic-way
+    long A = x >= 0 ? 2 * x : -2 * x - 1;
+    long B = y >= 0 ? 2 * y : -2 * y - 1;
+    long C = (A >= B ? A * A + A + B : A + B * B) / 2;
+    long n = x < 0 && y < 0 || x >= 0 && y >= 0 ? C : -C - 1;
+
+    // change output based on seed
+    n *= seed;
+    
+    //pretty fast prng algorithm
+    //from here: https://www.javamex.com/tutorials/random_numbers/xorshift.shtml
+    n ^= (n << 21);
+    n ^= (n >>> 35);
+    n ^= (n << 4);
+    
+    // some arbitrary conversion from an integer into a float between 0 and 1...
+    float m = Math.abs(n % 10000) / 10000f;
+
+    // based on the specified proportions of tiles and the float between 0 and 1,
+    // return the tile
+    if (m < percentages[0]) {
+      return Tile.BAD;
+    } else if (m < percentages[0] + percentages[1]) {
+      return Tile.MONEY;
+    } else if (m < percentages[0] + percentages[1] + percentages[2]) {
+      return Tile.INCOME;
+    } else if (m < percentages[0] + percentages[1] + percentages[2] + percentages[3]) {
+      return Tile.FOOD;
+    } else {
+      // every other tile is filled with air
+      return Tile.AIR;
+    }
+  }
+
+  public String getName() {
+    return "legacy";
+  }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * exports everything a player has explored to one PNG map, with a pixel (or a square of pixels) per tile in the
+ * minimap's colours. explored chunks are the ones with a chunk file; the rest of the map is left black
+ *
+ * the map is made one chunk row at a time. rows are generated in parallel but only a few are in memory at once,
+ * and they are handed to the PNG encoder in order. a row is kept as one byte per tile and only turned into
+ * pixels one scanline at a time while it's written, so scale doesn't add to it. memory still grows with the
+ * width of the explored area (2 rows per thread of width times chunk size tiles), just not with its height;
+ * maps whose rows wouldn't fit, or that are too big for a PNG, are refused before anything is written
+ *
+ * usage: java MapExporter [dir] [out] [pixels per tile] [threads]
+ */
+public class MapExporter {
+  private int seed;       // world seed, for the tiles that haven't been used
+  private WorldGenerator generator;  // what the world was generated with
+  private int chunkSize;  // width and height of a chunk in tiles
+  private String dir;     // folder the world is saved in
+  private int scale;      // pixels per tile
+  // explored area in chunks, inclusive
+  private int left = Integer.MAX_VALUE;
+  private int top = Integer.MAX_VALUE;
+  private int right = Integer.MIN_VALUE;
+  private int bottom = Integer.MIN_VALUE;
+
+  /**
+   * Constructs an exporter for a saved world
+   *
+   * @param dir   folder the world is saved in
+   * @param scale pixels per tile
+   * @throws IOException if the world's data file can't be read
+   */
+  public MapExporter(String dir, int scale) throws IOException {
+    this.dir = dir;
+    this.scale = scale;
+    // the seed is the first thing in the data file
+    try (Scanner s = new Scanner(new File(dir, "_data.txt"))) {
+      seed = s.nextInt();
+    }
+    chunkSize = WorldStoreTool.readChunkSize(Paths.get(dir));
+    generator = WorldStoreTool.readGenerator(Paths.get(dir));
+
+    // find how far the chunk files reach, without keeping a list of them
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(dir))) {
+      for (Path p : stream) {
+        if (ChunkMigration.isChunkFile(p.toFile())) {
+          String[] coords = p.getFileName().toString().split("_");
+          int x = Integer.parseInt(coords[0]);
+          int y = Integer.parseInt(coords[1]);
+          left = Math.min(left, x);
+          top = Math.min(top, y);
+          right = Math.max(right, x);
+          bottom = Math.max(bottom, y);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the width of the map
+   *
+   * @return width in pixels; a long, since a wide world at a big scale doesn't fit in an int
+   */
+  public long getWidth() {
+    return right < left ? 0 : ((long) right - left + 1) * chunkSize * scale;
+  }
+
+  /**
+   * Gets the height of the map
+   *
+   * @return height in pixels
+   */
+  public long getHeight() {
+    return bottom < top ? 0 : ((long) bottom - top + 1) * chunkSize * scale;
+  }
+
+  /**
+   * Writes the map
+   *
+   * @param out     PNG file to write
+   * @param threads number of threads generating chunk rows
+   * @throws Exception if the map can't be written
+   */
+  public void export(String out, int threads) throws Exception {
+    long width = getWidth();
+    long height = getHeight();
+    if (width == 0) {
+      throw new IOException("no chunk files in " + dir);
+    }
+    // a scanline is one array and a PNG's sides are ints; a row of chunks is one array of tiles
+    long rowTiles = width / scale * chunkSize;
+    if (1 + width * 3 > Integer.MAX_VALUE - 8 || height > Integer.MAX_VALUE
+        || rowTiles > Integer.MAX_VALUE - 8) {
+      throw new IOException(String.format("a %dx%d map is too big, try fewer pixels per tile", width, height));
+    }
+    long rowsInFlight = Math.min(threads * 2L, bottom - top + 1L);
+    if (rowsInFlight * rowTiles > Runtime.getRuntime().maxMemory() / 2) {
+      throw new IOException(String.format("%d rows of %d tiles don't fit in memory, try fewer threads",
+                                          rowsInFlight, rowTiles));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    PngWriter png = null;
+    boolean done = false;
+    try (OutputStream file = new BufferedOutputStream(new FileOutputStream(out), 1 << 16)) {
+      png = new PngWriter(file, (int) width, (int) height, Deflater.BEST_SPEED);
+      byte[] scanline = new byte[PngWriter.rowBytes((int) width)];
+      // at most two chunk rows per thread are generated ahead of the one being written
+      ArrayDeque<Future<byte[]>> ahead = new ArrayDeque<Future<byte[]>>();
+      int next = top;
+      for (int y = top; y <= bottom; y++) {
+        while (next <= bottom && ahead.size() < threads * 2) {
+          final int row = next++;
+          ahead.add(pool.submit(() -> chunkRow(row)));
+        }
+        writeRow(png, ahead.poll().get(), scanline);
+      }
+      png.close();
+      done = true;
+    } finally {
+      pool.shutdownNow();
+      // a failed export still frees the deflater; the stream itself is closed above
+      if (png != null && !done) {
+        png.abort();
+      }
+    }
+  }
+
+  /**
+   * Generates the tiles of one row of chunks
+   *
+   * @param cy chunk y coordinate of the row
+   * @return Tile ordinals, row by row across the whole map; -1 for tiles that haven't been explored
+   */
+  private byte[] chunkRow(int cy) {
+    int rowTiles = (right - left + 1) * chunkSize;
+    byte[] band = new byte[rowTiles * chunkSize];
+    Arrays.fill(band, (byte) -1);
+
+    for (int cx = left; cx <= right; cx++) {
+      // chunks without a file haven't been explored and stay black
+      if (!new File(String.format("%s/%d_%d", dir, cx, cy)).isFile()) {
+        continue;
+      }
+      Chunk c = Chunk.load(dir, cx, cy, chunkSize);
+      for (int i = 0; i < chunkSize; i++) {
+        for (int j = 0; j < chunkSize; j++) {
+          Tile t = c.get(i, j) ? Tile.USED : World.generate(generator, seed, cx * chunkSize + i, cy * chunkSize + j);
+          band[j * rowTiles + (cx - left) * chunkSize + i] = (byte) t.ordinal();
+        }
+      }
+    }
+    return band;
+  }
+
+  /**
+   * Writes a row of chunks as scanlines, scale of them per row of tiles
+   *
+   * @param png      PNG being written
+   * @param band     the row's tiles, from chunkRow
+   * @param scanline buffer for one scanline
+   * @throws IOException if the scanlines can't be written
+   */
+  private void writeRow(PngWriter png, byte[] band, byte[] scanline) throws IOException {
+    int rowTiles = band.length / chunkSize;
+    for (int j = 0; j < chunkSize; j++) {
+      scanline[0] = 0;
+      for (int x = 0, b = 1; x < rowTiles; x++) {
+        byte t = band[j * rowTiles + x];
+        int colour = t < 0 ? 0 : Minimap.COLOURS[t];
+        for (int k = 0; k < scale; k++) {
+          scanline[b++] = (byte) (colour >> 16);
+          scanline[b++] = (byte) (colour >> 8);
+          scanline[b++] = (byte) colour;
+        }
+      }
+      // each row of tiles is scale pixels high
+      for (int k = 0; k < scale; k++) {
+        png.writeRows(scanline, 0, 1);
+      }
+    }
+  }
+
+  /**
+   * Exports a saved world and prints how big the map is and how fast it was made
+   *
+   * @param args optionally the world folder, the PNG to write, pixels per tile, and threads
+   * @throws Exception if the world can't be read or the map can't be written
+   */
+  public static void main(String[] args) throws Exception {
+    String dir = args.length > 0 ? args[0] : "world";
+    String out = args.length > 1 ? args[1] : "map.png";
+    int scale = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    MapExporter exporter = new MapExporter(dir, scale);
+    long start = System.nanoTime();
+    exporter.export(out, threads);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    long tiles = exporter.getWidth() * exporter.getHeight() / scale / scale;
+    System.out.println(String.format("%dx%d map of %d tiles written to %s in %.2f s: %.0f tiles/s",
+                                     exporter.getWidth(), exporter.getHeight(), tiles, out, seconds,
+                                     tiles / seconds));
+  }
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * zoomed out overview of the city, kept by the simulation. every chunk gets a summary with one pixel per tile,
+ * coloured by tile type, which is built once and then kept up to date as tiles get used. the summaries in view
+ * are handed to the renderer through the frames, so a summary is never changed once it's built: a used tile
+ * replaces the chunk's summary with an updated copy. the renderer only scales them, so hundreds of chunks can
+ * be shown at once without it ever touching the world
+ */
+public class Minimap implements WorldListener {
+  // colour of each tile type, indexed by Tile.ordinal(): AIR, BAD, MONEY, INCOME, FOOD, USED
+  public static final int[] COLOURS = {
+    0xFF303030, 0xFFE04040, 0xFFF0D040, 0xFF40C060, 0xFF4090F0, 0xFF707070
+  };
+  private static final int MAX_BUILDS = 24;        // new summaries built per tick, so a tick never reads many files
+  private static final int MAX_SUMMARIES = 1024;   // summaries kept; 4 MB of 32x32 chunks
+
+  private World world;                             // world being summarised
+  private int visible;                             // chunks the last overview covered
+  private ArrayList<Integer> unread = new ArrayList<Integer>();  // chunks in view to read from their files
+  // one pixel per tile, row by row, for each chunk, least recently shown first. bounded, since panning keeps
+  // building new ones; never below two screens, so that a small chunk size doesn't rebuild the visible chunks
+  private HashMap<Integer, int[]> summaries = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+      return size() > Math.max(MAX_SUMMARIES, 2 * visible);
+    }
+  };
+
+  /**
+   * Constructs a minimap for a world and starts listening for used tiles
+   *
+   * @param world world to show
+   */
+  public Minimap(World world) {
+    this.world = world;
+    world.addListener(this);
+  }
+
+  /**
+   * Checks if this minimap belongs to a world
+   *
+   * @param w world to check
+   * @return whether the minimap shows that world
+   */
+  public boolean isFor(World w) {
+    return world == w;
+  }
+
+  /**
+   * Stops listening to the world, once the minimap isn't needed anymore
+   */
+  public void dispose() {
+    world.removeListener(this);
+  }
+
+  /**
+   * Recolours a single pixel of the summary when a tile gets used. The summary may be in a frame the
+   * renderer is drawing, so it's copied rather than changed
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   */
+  public void tileUsed(int x, int y) {
+    int key = Convert.twoToOne(Convert.chunkCoord(x, world.chunkShift), Convert.chunkCoord(y, world.chunkShift));
+    int[] summary = summaries.get(key);
+    // chunks without a summary yet will read the used tile when they get built
+    if (summary != null) {
+      summary = summary.clone();
+      int i = Convert.tileCoord(x, world.chunkMask);
+      int j = Convert.tileCoord(y, world.chunkMask);
+      summary[j * world.chunkSize + i] = COLOURS[Tile.USED.ordinal()];
+      summaries.put(key, summary);
+    }
+  }
+
+  /**
+   * Finds the chunks in view without a summary, a few at a time; the rest are found on the next calls.
+   * Loaded chunks are summarised straight away, the others are left for build to read from their files.
+   * Called by the simulation thread while it holds its lock, since it looks at the loaded chunks
+   *
+   * @param playerX       x position
+   * @param playerY       y position
+   * @param width         width of the screen
+   * @param height        height of the screen
+   * @param pixelsPerTile how big each tile is drawn, 1 to 4 pixels
+   */
+  public void collect(float playerX, float playerY, int width, int height, int pixelsPerTile) {
+    int[] r = range(playerX, playerY, width, height, pixelsPerTile);
+    unread.clear();
+    int builds = 0;
+    for (int cx = r[0]; cx <= r[2] && builds < MAX_BUILDS; cx++) {
+      for (int cy = r[1]; cy <= r[3] && builds < MAX_BUILDS; cy++) {
+        int key = Convert.twoToOne(cx, cy);
+        if (!summaries.containsKey(key)) {
+          Chunk loaded = world.getCache().get(key);
+          if (loaded != null) {
+            summaries.put(key, summarise(loaded, cx, cy));
+          } else {
+            unread.add(key);
+          }
+          builds++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the chunks collect left over from their files and summarises them. Called by the simulation
+   * thread after it lets go of its lock, so that the reads don't keep readers of the world waiting; nothing
+   * else touches the minimap or the chunk files in between
+   */
+  public void build() {
+    for (int key : unread) {
+      int cx = Convert.oneToFirst(key);
+      int cy = Convert.oneToSecond(key);
+      summaries.put(key, summarise(Chunk.load(world.dir, cx, cy, world.chunkSize), cx, cy));
+    }
+    unread.clear();
+  }
+
+  /**
+   * Puts the summaries of the chunks in view into a frame
+   *
+   * @param f             frame to fill
+   * @param playerX       x position
+   * @param playerY       y position
+   * @param width         width of the screen
+   * @param height        height of the screen
+   * @param pixelsPerTile how big each tile is drawn, 1 to 4 pixels
+   */
+  public void fill(Frame f, float playerX, float playerY, int width, int height, int pixelsPerTile) {
+    int[] r = range(playerX, playerY, width, height, pixelsPerTile);
+    f.overview = pixelsPerTile;
+    f.overviewLeft = r[0];
+    f.overviewTop = r[1];
+    f.resizeOverview(r[2] - r[0] + 1, r[3] - r[1] + 1);
+    visible = f.overviewColumns * f.overviewRows;
+    int n = 0;
+    for (int cx = r[0]; cx <= r[2]; cx++) {
+      for (int cy = r[1]; cy <= r[3]; cy++) {
+        f.overviewChunks[n++] = summaries.get(Convert.twoToOne(cx, cy));  // null until it's built
+      }
+    }
+  }
+
+  /**
+   * Works out which chunks cover the screen
+   *
+   * @return left, top, right, and bottom chunk coordinates, all inclusive
+   */
+  private int[] range(float playerX, float playerY, int width, int height, int pixelsPerTile) {
+    return new int[] {
+      (int) Math.floor((playerX - width / 2f / pixelsPerTile) / world.chunkSize),
+      (int) Math.floor((playerY - height / 2f / pixelsPerTile) / world.chunkSize),
+      (int) Math.floor((playerX + width / 2f / pixelsPerTile) / world.chunkSize),
+      (int) Math.floor((playerY + height / 2f / pixelsPerTile) / world.chunkSize)
+    };
+  }
+
+  /**
+   * Builds the summary of a chunk from the seed and its used tiles
+   *
+   * @param chunk used tiles of the chunk
+   * @param cx    chunk x coordinate
+   * @param cy    chunk y coordinate
+   * @return one colour per tile, row by row
+   */
+  private int[] summarise(Chunk chunk, int cx, int cy) {
+    byte[] terrain = world.terrain(cx, cy);
+    int[] summary = new int[world.chunkSize * world.chunkSize];
+    for (int i = 0; i < world.chunkSize; i++) {
+      for (int j = 0; j < world.chunkSize; j++) {
+        Tile tile = chunk.get(i, j) ? Tile.USED : World.TILES[terrain[i * world.chunkSize + j]];
+        summary[j * world.chunkSize + i] = COLOURS[tile.ordinal()];
+      }
+    }
+    return summary;
+  }
+}
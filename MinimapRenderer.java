@@ -0,0 +1,87 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * draws the overview from the chunk summaries in a frame. each summary is copied into an image the first time
+ * it's shown, and again only when the simulation has replaced it because a tile got used, so drawing the
+ * overview is just scaling images
+ */
+public class MinimapRenderer {
+  private static final int MAX_IMAGES = 1024;  // images kept; 4 MB of 32x32 chunks
+
+  private PApplet app;                         // PApplet to draw with
+  private int visible;                         // chunks the last overview covered
+  // image of each chunk and the summary it was copied from, least recently drawn first. bounded like the
+  // summaries themselves, and never below two screens
+  private HashMap<Integer, Entry> images = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+      return size() > Math.max(MAX_IMAGES, 2 * visible);
+    }
+  };
+
+  /**
+   * an image and the summary that's in it
+   */
+  private static class Entry {
+    int[] summary;
+    PImage image;
+  }
+
+  /**
+   * Constructs a new MinimapRenderer
+   *
+   * @param app PApplet instance
+   */
+  public MinimapRenderer(PApplet app) {
+    this.app = app;
+  }
+
+  /**
+   * Draws the overview of a frame centered on the player
+   *
+   * @param f      frame to draw
+   * @param width  width of the screen
+   * @param height height of the screen
+   */
+  public void draw(Frame f, int width, int height) {
+    int size = f.chunkSize;
+    int chunkPixels = size * f.overview;
+    visible = f.overviewColumns * f.overviewRows;
+    int n = 0;
+    for (int i = 0; i < f.overviewColumns; i++) {
+      for (int j = 0; j < f.overviewRows; j++, n++) {
+        int[] summary = f.overviewChunks[n];
+        if (summary == null) {
+          continue;  // not built yet; it shows up in a later frame
+        }
+        int cx = f.overviewLeft + i;
+        int cy = f.overviewTop + j;
+        Entry e = images.get(Convert.twoToOne(cx, cy));
+        if (e == null || e.image.width != size) {
+          e = new Entry();
+          e.image = app.createImage(size, size, PApplet.RGB);
+          images.put(Convert.twoToOne(cx, cy), e);
+        }
+        if (e.summary != summary) {
+          // a new chunk, or the simulation replaced the summary after a tile got used
+          e.image.loadPixels();
+          System.arraycopy(summary, 0, e.image.pixels, 0, summary.length);
+          e.image.updatePixels();
+          e.summary = summary;
+        }
+        float screenX = width / 2 + (cx * size - f.p.x) * f.overview;
+        float screenY = height / 2 + (cy * size - f.p.y) * f.overview;
+        app.image(e.image, screenX, screenY, chunkPixels, chunkPixels);
+      }
+    }
+
+    // player marker
+    app.noStroke();
+    app.fill(255);
+    app.ellipse(width / 2, height / 2, 6, 6);
+  }
+}
@@ -0,0 +1,171 @@
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * alternative software renderer for the world. instead of asking processing to scale and draw every tile
+ * every frame, each tile image is scaled once per zoom level and then copied row by row straight into
+ * the sketch's pixel array
+ */
+public class PixelRenderer {
+  private PApplet app;        // PApplet whose pixels are drawn to
+  private int size = -1;      // size in pixels of the scaled tiles; -1 when nothing is scaled yet
+  private int[][] buildings;  // scaled pavement (0) and buildings (1 to 8), flattened rows of pixels
+  private int[][][] overlaid; // scaled buildings with a modifier already blended on top: [building][modifier]
+
+  /**
+   * Constructs a new PixelRenderer
+   *
+   * @param app PApplet instance to draw with
+   */
+  public PixelRenderer(PApplet app) {
+    this.app = app;
+  }
+
+  /**
+   * Draws the world by copying the pre-scaled tile pixels directly into the pixel array
+   *
+   * @param f      frame to draw
+   * @param width  width of the screen
+   * @param height height of the screen
+   */
+  public void draw(Frame f, int width, int height) {
+    float zoom = f.zoom;
+    float playerX = f.p.x;
+    float playerY = f.p.y;
+    int s = Math.round(zoom);
+    if (s != size) {
+      // only rescale the images when the zoom level changes
+      scale(s);
+    }
+
+    // tiles in view, as captured by the simulation
+    int startX = f.left;
+    int startY = f.top;
+    int endX = f.left + f.columns;
+    int endY = f.top + f.rows;
+
+    int[][] row = new int[endX - startX][];  // pixels for every tile in the current row of tiles
+    int[] lefts = new int[endX - startX];    // left screen coordinate of every tile in the row
+
+    app.loadPixels();
+    int[] pixels = app.pixels;
+    for (int y = startY; y < endY; y++) {
+      int top = (int) Math.floor(height / 2 + zoom * (y - playerY));
+      // skip rows that are entirely off the screen
+      if (top >= height || top + s <= 0) {
+        continue;
+      }
+
+      // pick the image for every tile in the row first
+      for (int x = startX; x < endX; x++) {
+        lefts[x - startX] = (int) Math.floor(width / 2 + zoom * (x - playerX));
+        row[x - startX] = spriteFor(f, x, y);
+      }
+
+      // then copy the row of tiles one line of pixels at a time
+      int firstLine = Math.max(top, 0);
+      int lastLine = Math.min(top + s, height);
+      for (int line = firstLine; line < lastLine; line++) {
+        int spriteOffset = (line - top) * s;
+        int screenOffset = line * width;
+        for (int i = 0; i < row.length; i++) {
+          // clip the span to the screen
+          int left = Math.max(lefts[i], 0);
+          int right = Math.min(lefts[i] + s, width);
+          if (left < right) {
+            System.arraycopy(row[i], spriteOffset + left - lefts[i], pixels, screenOffset + left, right - left);
+          }
+        }
+      }
+    }
+    app.updatePixels();
+  }
+
+  /**
+   * Picks the pre-scaled image for a tile
+   *
+   * @param f frame the tile is in
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   * @return scaled pixels of the tile
+   */
+  private int[] spriteFor(Frame f, int x, int y) {
+    Tile tile = f.getTile(x, y);
+    switch (tile) {
+      case AIR:
+        return buildings[0];
+      case BAD:
+        return overlaid[f.getBuilding(x, y)][0];
+      case FOOD:
+        return overlaid[f.getBuilding(x, y)][1];
+      case MONEY:
+        return overlaid[f.getBuilding(x, y)][2];
+      case INCOME:
+        return overlaid[f.getBuilding(x, y)][3];
+      default:
+        // used tiles are plain buildings
+        return buildings[f.getBuilding(x, y)];
+    }
+  }
+
+  /**
+   * Scales all the tile images to the new size and blends the modifiers onto the buildings
+   *
+   * @param s new tile size in pixels
+   */
+  private void scale(int s) {
+    size = s;
+    buildings = new int[9][];
+    for (int i = 0; i < 9; i++) {
+      buildings[i] = scaled(Assets.get("building" + i), s);
+      // everything under the buildings is the black background, so the buildings become fully opaque
+      for (int j = 0; j < buildings[i].length; j++) {
+        buildings[i][j] = blend(buildings[i][j], 0xFF000000);
+      }
+    }
+
+    // the modifiers are blended once here so drawing never has to blend anything
+    int[][] modifiers = {
+      scaled(Assets.get("bad"), s), scaled(Assets.get("food"), s),
+      scaled(Assets.get("money"), s), scaled(Assets.get("wage"), s)
+    };
+    overlaid = new int[9][4][];
+    for (int i = 1; i < 9; i++) {
+      for (int m = 0; m < 4; m++) {
+        overlaid[i][m] = new int[s * s];
+        for (int j = 0; j < s * s; j++) {
+          overlaid[i][m][j] = blend(modifiers[m][j], buildings[i][j]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Cuts a sprite out of the atlas and scales it
+   *
+   * @param sprite sprite to scale
+   * @param s      new width and height
+   * @return pixels of the scaled sprite
+   */
+  private int[] scaled(Sprite sprite, int s) {
+    PImage img = sprite.atlas.get(sprite.u, sprite.v, sprite.width, sprite.height);
+    img.resize(s, s);
+    img.loadPixels();
+    return img.pixels;
+  }
+
+  /**
+   * Blends a colour on top of an opaque colour (source over)
+   *
+   * @param top    colour on top, with alpha
+   * @param bottom opaque colour below
+   * @return opaque blended colour
+   */
+  private static int blend(int top, int bottom) {
+    int a = top >>> 24;
+    int r = (((top >> 16) & 0xFF) * a + ((bottom >> 16) & 0xFF) * (255 - a)) / 255;
+    int g = (((top >> 8) & 0xFF) * a + ((bottom >> 8) & 0xFF) * (255 - a)) / 255;
+    int b = ((top & 0xFF) * a + (bottom & 0xFF) * (255 - a)) / 255;
+    return 0xFF000000 | r << 16 | g << 8 | b;
+  }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * writes an RGB PNG one band of scanlines at a time, so that images far bigger than memory can be written.
+ * the compressed data is cut into IDAT chunks as it comes out of the deflater instead of being collected first
+ */
+public class PngWriter {
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final int IDAT_SIZE = 1 << 16;  // bytes of compressed data per IDAT chunk
+
+  private OutputStream out;            // file being written
+  private DeflaterOutputStream image;  // compresses scanlines into IDAT chunks
+  private Deflater deflater;
+  private int width;
+  private int height;
+  private long rowsLeft;               // scanlines still to be written
+
+  /**
+   * Starts a PNG by writing its header
+   *
+   * @param out    stream to write to; closed by close()
+   * @param width  width of the image in pixels
+   * @param height height of the image in pixels
+   * @param level  compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+   * @throws IOException if the header can't be written
+   */
+  public PngWriter(OutputStream out, int width, int height, int level) throws IOException {
+    this.out = out;
+    this.width = width;
+    this.height = height;
+    rowsLeft = height;
+    out.write(SIGNATURE);
+
+    // 8 bits per channel, colour type 2 (RGB), default compression, filter, and no interlacing
+    byte[] header = new byte[13];
+    putInt(header, 0, width);
+    putInt(header, 4, height);
+    header[8] = 8;
+    header[9] = 2;
+    writeChunk("IHDR", header, 0, header.length);
+
+    deflater = new Deflater(level);
+    image = new DeflaterOutputStream(new IdatStream(), deflater, IDAT_SIZE);
+  }
+
+  /**
+   * Gets how many bytes a scanline takes, including the filter byte in front
+   *
+   * @param width width of the image in pixels
+   * @return bytes per scanline
+   */
+  public static int rowBytes(int width) {
+    return 1 + width * 3;
+  }
+
+  /**
+   * Writes scanlines. Each one is a filter byte (0 for none) followed by the red, green, and blue of every pixel
+   *
+   * @param rows   buffer holding the scanlines
+   * @param offset where the first scanline starts
+   * @param count  number of scanlines
+   * @throws IOException if they can't be written, or there are more than the height
+   */
+  public void writeRows(byte[] rows, int offset, int count) throws IOException {
+    if (count > rowsLeft) {
+      throw new IOException(String.format("%d scanlines written to a %d pixel high image", height - rowsLeft + count,
+                                          height));
+    }
+    image.write(rows, offset, count * rowBytes(width));
+    rowsLeft -= count;
+  }
+
+  /**
+   * Writes scanlines from ARGB pixels, such as a PImage's, ignoring alpha
+   *
+   * @param pixels pixels, row by row
+   * @param offset index of the first pixel
+   * @param count  number of scanlines
+   * @param row    buffer for one scanline, at least rowBytes(width) long
+   * @throws IOException if they can't be written, or there are more than the height
+   */
+  public void writeRows(int[] pixels, int offset, int count, byte[] row) throws IOException {
+    for (int y = 0; y < count; y++) {
+      row[0] = 0;
+      for (int x = 0, i = offset + y * width, b = 1; x < width; x++, i++) {
+        int c = pixels[i];
+        row[b++] = (byte) (c >> 16);
+        row[b++] = (byte) (c >> 8);
+        row[b++] = (byte) c;
+      }
+      writeRows(row, 0, 1);
+    }
+  }
+
+  /**
+   * Finishes the image data, writes the end of the PNG, and closes the stream
+   *
+   * @throws IOException if it can't be written, or not every scanline has been written
+   */
+  public void close() throws IOException {
+    try {
+      if (rowsLeft != 0) {
+        throw new IOException(String.format("PNG closed with %d of %d scanlines missing", rowsLeft, height));
+      }
+      image.finish();
+      image.flush();
+      writeChunk("IEND", new byte[0], 0, 0);
+    } finally {
+      deflater.end();
+      out.close();
+    }
+  }
+
+  /**
+   * Gives up on the image after a failed write: frees the deflater and closes the stream, leaving the PNG
+   * unfinished
+   *
+   * @throws IOException if the stream can't be closed
+   */
+  public void abort() throws IOException {
+    try {
+      deflater.end();
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes one PNG chunk: length, type, data, and the CRC of the type and data
+   *
+   * @param type   four letter chunk type
+   * @param data   buffer holding the data
+   * @param offset where the data starts
+   * @param length length of the data
+   * @throws IOException if it can't be written
+   */
+  private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+    byte[] head = new byte[8];
+    putInt(head, 0, length);
+    for (int i = 0; i < 4; i++) {
+      head[4 + i] = (byte) type.charAt(i);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(head, 4, 4);
+    crc.update(data, offset, length);
+    byte[] tail = new byte[4];
+    putInt(tail, 0, (int) crc.getValue());
+
+    out.write(head);
+    out.write(data, offset, length);
+    out.write(tail);
+  }
+
+  /**
+   * Writes an int big endian, as PNG wants
+   *
+   * @param b      buffer to write into
+   * @param offset where to write
+   * @param n      the int
+   */
+  private static void putInt(byte[] b, int offset, int n) {
+    b[offset] = (byte) (n >>> 24);
+    b[offset + 1] = (byte) (n >>> 16);
+    b[offset + 2] = (byte) (n >>> 8);
+    b[offset + 3] = (byte) n;
+  }
+
+  /**
+   * collects compressed data and writes it out as IDAT chunks
+   */
+  private class IdatStream extends OutputStream {
+    private byte[] buffer = new byte[IDAT_SIZE];
+    private int size;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) throws IOException {
+      while (length > 0) {
+        int n = Math.min(length, buffer.length - size);
+        System.arraycopy(b, offset, buffer, size, n);
+        size += n;
+        offset += n;
+        length -= n;
+        if (size == buffer.length) {
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (size > 0) {
+        writeChunk("IDAT", buffer, 0, size);
+        size = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/**
+ * Compares how long the world takes to draw with the WorldRenderer and with the PixelRenderer,
+ * at both zoom levels of the game
+ */
+public class RenderBenchmark {
+  private static final int WARMUP_FRAMES = 30;   // frames drawn before timing so the JIT has settled
+  private static final int TIMED_FRAMES = 200;   // frames drawn per measurement
+  private static final float[] ZOOMS = {128, 25};
+
+  /**
+   * Runs the benchmark and prints the average frame time of each path
+   *
+   * @param sim      simulation to capture frames from
+   * @param images   sprite based renderer
+   * @param pixels   pixel renderer to compare against
+   * @param width    width of the screen
+   * @param height   height of the screen
+   */
+  public static void run(Simulation sim, WorldRenderer images, PixelRenderer pixels, int width, int height) {
+    for (float zoom : ZOOMS) {
+      // the same frame is drawn every time, so no chunk loading or simulation gets timed
+      Frame f = sim.capture(zoom);
+
+      for (int i = 0; i < WARMUP_FRAMES; i++) {
+        images.draw(f, width, height);
+        pixels.draw(f, width, height);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < TIMED_FRAMES; i++) {
+        images.draw(f, width, height);
+      }
+      double imageMs = (System.nanoTime() - start) / 1e6 / TIMED_FRAMES;
+
+      start = System.nanoTime();
+      for (int i = 0; i < TIMED_FRAMES; i++) {
+        pixels.draw(f, width, height);
+      }
+      double pixelMs = (System.nanoTime() - start) / 1e6 / TIMED_FRAMES;
+
+      System.out.println(String.format("zoom %.0f: WorldRenderer %.3f ms/frame, PixelRenderer %.3f ms/frame (%.1fx)",
+                                       zoom, imageMs, pixelMs, imageMs / pixelMs));
+    }
+  }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * finds the closest unused tiles of a type without looking at tiles one by one. the world is split into
+ * regions of chunks with their own tile counts, above the counts each chunk already keeps. the search
+ * always opens the closest area that could still contain a match and skips every area whose count is
+ * zero, going from regions to chunks to smaller and smaller parts of a chunk until single tiles are left
+ */
+public class ResourceIndex implements WorldListener {
+  private static final int REGION_CHUNKS = 4;  // width and height of a region, in chunks
+  private static final int MAX_REGIONS = 256;  // region counts kept; they are recounted from the chunks if dropped
+
+  private World world;                                               // world being searched
+  // tile counts per region by Tile.ordinal(), least recently used first. bounded, since searches keep counting
+  // new regions for as long as the player explores
+  private HashMap<Integer, int[]> regions = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+      return size() > MAX_REGIONS;
+    }
+  };
+
+  /**
+   * an area of the world waiting to be searched, ordered by how close it could possibly be
+   */
+  private static class Area implements Comparable<Area> {
+    int left, top, right, bottom;  // tile rectangle, right and bottom exclusive
+    float distance;                // squared distance from the search point to the closest point in the area
+
+    Area(int left, int top, int right, int bottom, float px, float py) {
+      this.left = left; this.top = top; this.right = right; this.bottom = bottom;
+      float dx = Math.max(Math.max(left - px, px - right), 0);
+      float dy = Math.max(Math.max(top - py, py - bottom), 0);
+      distance = dx * dx + dy * dy;
+    }
+
+    public int compareTo(Area a) {
+      return Float.compare(distance, a.distance);
+    }
+  }
+
+  /**
+   * Constructs an index for a world and starts listening for used tiles
+   *
+   * @param world world to search
+   */
+  public ResourceIndex(World world) {
+    this.world = world;
+    world.addListener(this);
+  }
+
+  /**
+   * Checks if this index belongs to a world
+   *
+   * @param w world to check
+   * @return whether the index searches that world
+   */
+  public boolean isFor(World w) {
+    return world == w;
+  }
+
+  /**
+   * Stops listening to the world, once the index isn't needed anymore
+   */
+  public void dispose() {
+    world.removeListener(this);
+  }
+
+  /**
+   * Moves a used tile from its type to USED in the region counts
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   */
+  public void tileUsed(int x, int y) {
+    int regionSize = REGION_CHUNKS * world.chunkSize;
+    int[] counts = regions.get(Convert.twoToOne(Math.floorDiv(x, regionSize), Math.floorDiv(y, regionSize)));
+    // regions that haven't been counted yet will see the used tile when they are
+    if (counts != null) {
+      counts[world.generate(x, y).ordinal()]--;
+      counts[Tile.USED.ordinal()]++;
+    }
+  }
+
+  /**
+   * Finds the closest unused tile of a type
+   *
+   * @param type        tile type to look for
+   * @param px          x coordinate to search from
+   * @param py          y coordinate to search from
+   * @param maxDistance how far away to search, in tiles
+   * @return coordinates of the tile, or null if there isn't one in range
+   */
+  public Vector nearest(Tile type, float px, float py, float maxDistance) {
+    ArrayList<Vector> found = nearest(type, px, py, maxDistance, 1);
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  /**
+   * Finds the k closest unused tiles of a type, closest first
+   *
+   * @param type        tile type to look for
+   * @param px          x coordinate to search from
+   * @param py          y coordinate to search from
+   * @param maxDistance how far away to search, in tiles
+   * @param k           how many tiles to find
+   * @return coordinates of the tiles, up to k of them
+   */
+  public ArrayList<Vector> nearest(Tile type, float px, float py, float maxDistance, int k) {
+    ArrayList<Vector> found = new ArrayList<Vector>();
+    PriorityQueue<Area> queue = new PriorityQueue<Area>();
+    float maxSquared = maxDistance * maxDistance;
+    int regionSize = REGION_CHUNKS * world.chunkSize;
+
+    // start with every region in range
+    int firstX = Math.floorDiv((int) Math.floor(px - maxDistance), regionSize);
+    int lastX = Math.floorDiv((int) Math.floor(px + maxDistance), regionSize);
+    int firstY = Math.floorDiv((int) Math.floor(py - maxDistance), regionSize);
+    int lastY = Math.floorDiv((int) Math.floor(py + maxDistance), regionSize);
+    for (int rx = firstX; rx <= lastX; rx++) {
+      for (int ry = firstY; ry <= lastY; ry++) {
+        Area a = new Area(rx * regionSize, ry * regionSize, (rx + 1) * regionSize, (ry + 1) * regionSize, px, py);
+        if (a.distance <= maxSquared && getRegion(rx, ry)[type.ordinal()] > 0) {
+          queue.add(a);
+        }
+      }
+    }
+
+    while (!queue.isEmpty() && found.size() < k) {
+      Area a = queue.poll();
+      // everything left in the queue is further away than the range
+      if (a.distance > maxSquared) {
+        break;
+      }
+      int width = a.right - a.left;
+      int height = a.bottom - a.top;
+
+      if (width == 1 && height == 1) {
+        // single tile: since areas come out closest first, nothing left can be closer
+        found.add(new Vector(a.left, a.top));
+      } else if (width == regionSize && height == regionSize) {
+        // region: open up its chunks
+        for (int i = 0; i < REGION_CHUNKS; i++) {
+          for (int j = 0; j < REGION_CHUNKS; j++) {
+            int l = a.left + i * world.chunkSize;
+            int t = a.top + j * world.chunkSize;
+            addIfAny(queue, type, l, t, l + world.chunkSize, t + world.chunkSize, px, py);
+          }
+        }
+      } else {
+        // part of a chunk: split it into halves along both axes
+        int midX = a.left + (width + 1) / 2;
+        int midY = a.top + (height + 1) / 2;
+        addIfAny(queue, type, a.left, a.top, midX, midY, px, py);
+        addIfAny(queue, type, midX, a.top, a.right, midY, px, py);
+        addIfAny(queue, type, a.left, midY, midX, a.bottom, px, py);
+        addIfAny(queue, type, midX, midY, a.right, a.bottom, px, py);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Queues a part of a chunk if it isn't empty and contains at least one tile of the type
+   */
+  private void addIfAny(PriorityQueue<Area> queue, Tile type, int left, int top, int right, int bottom,
+                        float px, float py) {
+    if (right > left && bottom > top && world.countTiles(type, left, top, right, bottom) > 0) {
+      queue.add(new Area(left, top, right, bottom, px, py));
+    }
+  }
+
+  /**
+   * Gets the tile counts of a region, adding up its chunk counts the first time it is asked for
+   *
+   * @param rx region x coordinate
+   * @param ry region y coordinate
+   * @return number of tiles of each type, indexed by Tile.ordinal()
+   */
+  private int[] getRegion(int rx, int ry) {
+    int[] counts = regions.get(Convert.twoToOne(rx, ry));
+    if (counts == null) {
+      counts = new int[Tile.values().length];
+      for (int i = 0; i < REGION_CHUNKS; i++) {
+        for (int j = 0; j < REGION_CHUNKS; j++) {
+          ChunkSummary summary = world.getSummary(rx * REGION_CHUNKS + i, ry * REGION_CHUNKS + j);
+          for (Tile t : Tile.values()) {
+            counts[t.ordinal()] += summary.count(t);
+          }
+        }
+      }
+      regions.put(Convert.twoToOne(rx, ry), counts);
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * scores world seeds by how good the area around the starting point is, so new games don't start
+ * boxed in by bad tiles. only the terrain generator is used; no images, files, or chunks are touched
+ *
+ * run from the command line: java SeedScanner [count] [top] [threads] [first seed]
+ */
+public class SeedScanner {
+  private static final int RADIUS = 10;             // how far from the origin the starting area reaches
+  private static final int SIZE = 2 * RADIUS + 1;   // width of the starting area
+  // how much each tile type the player can hit is worth, indexed by Tile.ordinal()
+  private static final float[] VALUES = {0, -2.0f, 1.0f, 1.5f, 1.5f, 0};
+  private static final float SAFE_ZONE_BAD = -3.0f; // extra penalty for bad tiles right next to the spawn
+
+  /**
+   * a seed and its score
+   */
+  public static class Result implements Comparable<Result> {
+    public int seed;
+    public float score;
+
+    Result(int seed, float score) {
+      this.seed = seed; this.score = score;
+    }
+
+    public int compareTo(Result r) {
+      return Float.compare(score, r.score);
+    }
+  }
+
+  // buffers reused between seeds so scoring doesn't allocate
+  private Tile[] area = new Tile[SIZE * SIZE];
+  private boolean[] reached = new boolean[SIZE * SIZE];
+  private int[] queue = new int[SIZE * SIZE];
+  private float found;   // score of the reachable buildings found so far by the flood fill
+
+  /**
+   * Scores a seed. The player can only reach the air tiles connected to the spawn and can only hit the
+   * buildings next to those, so only those buildings count. Bad tiles around the spawn count extra
+   *
+   * @param seed seed to score
+   * @return score, higher is better
+   */
+  public float score(int seed) {
+    for (int i = 0; i < SIZE; i++) {
+      for (int j = 0; j < SIZE; j++) {
+        area[i * SIZE + j] = World.generate(WorldGenerator.DEFAULT, seed, i - RADIUS, j - RADIUS);
+        reached[i * SIZE + j] = false;
+      }
+    }
+
+    // flood fill the air from the spawn; buildings that touch the fill are reachable and get scored once
+    found = 0;
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = RADIUS * SIZE + RADIUS;
+    reached[RADIUS * SIZE + RADIUS] = true;
+    while (head < tail) {
+      int n = queue[head++];
+      int i = n / SIZE;
+      int j = n % SIZE;
+      // visit the four neighbours that are inside the area
+      if (i > 0) {
+        tail = visit(n - SIZE, tail);
+      }
+      if (i < SIZE - 1) {
+        tail = visit(n + SIZE, tail);
+      }
+      if (j > 0) {
+        tail = visit(n - 1, tail);
+      }
+      if (j < SIZE - 1) {
+        tail = visit(n + 1, tail);
+      }
+    }
+    float score = found;
+
+    // bad tiles bordering the cleared 3x3 spawn area are the first thing the player hits
+    for (int i = -2; i <= 2; i++) {
+      for (int j = -2; j <= 2; j++) {
+        if ((Math.abs(i) == 2 || Math.abs(j) == 2) && area[(i + RADIUS) * SIZE + j + RADIUS] == Tile.BAD) {
+          score += SAFE_ZONE_BAD;
+        }
+      }
+    }
+    return score;
+  }
+
+  /**
+   * Visits a tile during the flood fill: air is queued, reachable buildings are scored
+   *
+   * @param m    index of the tile in the area
+   * @param tail end of the queue
+   * @return new end of the queue
+   */
+  private int visit(int m, int tail) {
+    if (!reached[m]) {
+      reached[m] = true;
+      if (area[m] == Tile.AIR) {
+        queue[tail++] = m;
+      } else {
+        found += VALUES[area[m].ordinal()];
+      }
+    }
+    return tail;
+  }
+
+  /**
+   * Picks the best of a number of random seeds, for starting a new game
+   *
+   * @param r          random number generator to draw the seeds from
+   * @param candidates how many seeds to try
+   * @return the best seed
+   */
+  public static int pick(Random r, int candidates) {
+    SeedScanner scanner = new SeedScanner();
+    int best = r.nextInt();
+    float bestScore = scanner.score(best);
+    for (int i = 1; i < candidates; i++) {
+      int seed = r.nextInt();
+      float score = scanner.score(seed);
+      if (score > bestScore) {
+        best = seed;
+        bestScore = score;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Scores a range of seeds in parallel and keeps the best ones
+   *
+   * @param first   first seed to score
+   * @param count   how many consecutive seeds to score
+   * @param top     how many of the best seeds to return
+   * @param threads how many threads to score with
+   * @return the best seeds, best first
+   * @throws Exception if one of the threads fails
+   */
+  public static ArrayList<Result> scan(int first, long count, int top, int threads) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    ArrayList<Future<PriorityQueue<Result>>> parts = new ArrayList<Future<PriorityQueue<Result>>>();
+    try {
+      for (int t = 0; t < threads; t++) {
+        // every thread gets its own slice of the range and its own top list
+        long start = count * t / threads;
+        long end = count * (t + 1) / threads;
+        parts.add(pool.submit(() -> {
+          SeedScanner scanner = new SeedScanner();
+          PriorityQueue<Result> best = new PriorityQueue<Result>();  // worst of the best on top
+          for (long i = start; i < end; i++) {
+            int seed = (int) (first + i);
+            float score = scanner.score(seed);
+            if (best.size() < top) {
+              best.add(new Result(seed, score));
+            } else if (score > best.peek().score) {
+              best.poll();
+              best.add(new Result(seed, score));
+            }
+          }
+          return best;
+        }));
+      }
+
+      // merge the top lists of every thread
+      PriorityQueue<Result> merged = new PriorityQueue<Result>();
+      for (Future<PriorityQueue<Result>> part : parts) {
+        for (Result r : part.get()) {
+          merged.add(r);
+          if (merged.size() > top) {
+            merged.poll();
+          }
+        }
+      }
+      ArrayList<Result> results = new ArrayList<Result>(merged);
+      results.sort((a, b) -> Float.compare(b.score, a.score));
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Scans seeds from the command line and prints the best ones along with the throughput
+   *
+   * @param args seed count, how many to print, thread count, and first seed
+   * @throws Exception if scanning fails
+   */
+  public static void main(String[] args) throws Exception {
+    long count = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+    int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int first = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+    long start = System.nanoTime();
+    ArrayList<Result> results = scan(first, count, top, threads);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    for (Result r : results) {
+      System.out.println(String.format("%12d  %.1f", r.seed, r.score));
+    }
+    System.out.println(String.format("%d seeds in %.2f s: %.0f seeds/s, %.0f seeds/s per core",
+                                     count, seconds, count / seconds, count / seconds / threads));
+  }
+}
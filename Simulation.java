@@ -0,0 +1,715 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * runs the game itself on its own thread: chunk loading and saving, ball physics, collisions, and player
+ * stats. after every tick the parts the renderer needs are copied into a frame and published through a
+ * triple buffer, and the renderer sends player actions back through a lock-free command queue. this way
+ * slow drawing doesn't slow the game down and slow file access doesn't stall drawing
+ *
+ * anything else that needs to read the world from another thread must synchronize on the simulation
+ */
+public class Simulation implements Runnable {
+  public static final float WIN_INCOME = 20.00f;     // how much income required for winning
+  private static final long TICK_NANOS = 1000000000L / 60;  // the game runs at 60 ticks per second
+  private static final int FLUSH_TICKS = 60 * 10;     // ticks between saving changed chunks, so a crash loses little
+  private static final String DATA_FILE = "world/_data.txt";           // text save
+  private static final String SNAPSHOT_FILE = "world/_snapshot.bin";  // binary save used for fast resume
+
+  // game state, only touched by the simulation thread (or while synchronized on the simulation)
+  private World w;                          // world
+  private Ball p = new Ball(null, 0.1f);    // player; drawn by the renderer from the frames, not here
+  private float $;                          // player money
+  private float inc;                        // player income
+  private float food;                       // player food points
+  private Upgrade[] upgrades = createUpgrades();
+  private Random r = new Random();          // for random seed generation and food depletion
+  private ResourceIndex resources;          // finds the closest food for the food hint
+  private Vector hint;                      // closest food found since the player stopped
+  private int game;                         // counts new games
+  private int launches;                     // launches and fresh tiles hit since the game was started or loaded
+  private int hits;
+  private UpgradePlanner planner = new UpgradePlanner(createUpgrades());  // advice for the upgrades screen
+  private UpgradePlanner.Plan advice;       // latest finished plan
+  private Future<UpgradePlanner.Plan> planning;  // plan being made on the planner thread, or null
+  private float[] advisedStats;             // money, income, food and hits per launch the last plan was asked for
+  private int[] advisedBought;              // purchases of each upgrade the last plan was asked for
+  private ExecutorService plans;            // planner thread while the simulation thread runs
+
+  // view the chunks are loaded and the tiles captured for
+  private int width;
+  private int height;
+  private float zoom = 128;
+  private int overview;                     // pixels per tile of the overview, or 0 when it's closed
+  private Minimap minimap;                  // chunk summaries for the overview, built outside the lock
+
+  private FrameBuffer frames = new FrameBuffer();  // frames handed to the renderer
+  private ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<Command>();  // actions to carry out
+  private long tick;                        // ticks run so far
+  private volatile boolean running;         // cleared to stop the thread
+  private Thread thread;
+  private SpectatorFeed feed;               // spectators watching over a socket, or null
+
+  /**
+   * Constructs a new Simulation
+   *
+   * @param width  width of the screen
+   * @param height height of the screen
+   */
+  public Simulation(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Creates the four upgrades that can be bought, in their starting state
+   *
+   * @return the upgrades
+   */
+  public static Upgrade[] createUpgrades() {
+    Upgrade[] upgrades = new Upgrade[4];
+    upgrades[0] = new Upgrade(100f, 1.0f, 0.1f, -5f, 0, 15); //food depletion chance
+    upgrades[1] = new Upgrade(1.0f, 1.5f, 0.15f, 0.1f, 0, 100); //money and income per hit
+    upgrades[2] = new Upgrade(0.5f, 1.0f, 0.1f, 0.2f, 0, 100); //food per hit
+    upgrades[3] = new Upgrade(0.6f, 1.5f, 0.15f, 0.02f, 0, 15); //multiplier when hit red
+    return upgrades;
+  }
+
+  /**
+   * Starts the simulation thread
+   */
+  public void start() {
+    // one thread, so the planner (which isn't thread safe) only ever makes one plan at a time
+    plans = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "upgrade planner");
+      t.setDaemon(true);
+      return t;
+    });
+    running = true;
+    thread = new Thread(this, "simulation");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops the simulation thread and waits for it to finish
+   */
+  public void stop() {
+    running = false;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    plans.shutdownNow();
+    plans = null;
+    planning = null;
+  }
+
+  /**
+   * Runs ticks at a fixed rate until stopped
+   */
+  public void run() {
+    long next = System.nanoTime();
+    while (running) {
+      boolean building = false;
+      synchronized (this) {
+        tick();
+        if (overview > 0 && minimap != null) {
+          minimap.collect(p.p.x, p.p.y, width, height, overview);
+          building = true;
+        }
+      }
+      // the overview may read chunk files, which shouldn't keep readers of the world waiting
+      if (building) {
+        minimap.build();
+      }
+      // wait for the next tick; if the tick ran late, catch up without sleeping
+      next += TICK_NANOS;
+      long wait = next - System.nanoTime();
+      if (wait > 0) {
+        try {
+          Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        } catch (InterruptedException e) {
+          return;
+        }
+      } else if (wait < -10 * TICK_NANOS) {
+        // too far behind (e.g. after a long pause), so don't try to run all the missed ticks
+        next = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Queues an action to be carried out on the next tick. Can be called from any thread
+   *
+   * @param c the action
+   */
+  public void send(Command c) {
+    commands.add(c);
+  }
+
+  /**
+   * Gets the newest frame. Only called by the render thread
+   *
+   * @return the frame
+   */
+  public Frame latest() {
+    return frames.latest();
+  }
+
+  /**
+   * Gets the world, for readers on other threads that synchronize on the simulation
+   *
+   * @return the world
+   */
+  public World getWorld() {
+    return w;
+  }
+
+  /**
+   * Starts or stops streaming the game to spectators
+   *
+   * @param port port to listen on
+   * @return the feed, or null if it was stopped
+   * @throws IOException if the port can't be opened
+   */
+  public synchronized SpectatorFeed toggleFeed(int port) throws IOException {
+    if (feed != null) {
+      feed.close();
+      feed = null;
+    } else {
+      feed = new SpectatorFeed(port);
+    }
+    return feed;
+  }
+
+  /**
+   * Gets the spectator feed, for its metrics; read it while synchronized on the simulation
+   *
+   * @return the feed, or null if it isn't running
+   */
+  public SpectatorFeed getFeed() {
+    return feed;
+  }
+
+  /**
+   * Runs one step of the game: carries out queued actions, moves the ball, handles collisions, and
+   * publishes the result
+   */
+  public void tick() {
+    GameEvents.FramePhase commandsPhase = new GameEvents.FramePhase("tick: commands", tick);
+    commandsPhase.begin();
+    Command c;
+    while ((c = commands.poll()) != null) {
+      apply(c);
+    }
+    commandsPhase.commit();
+
+    GameEvents.FramePhase chunksPhase = new GameEvents.FramePhase("tick: chunks", tick);
+    chunksPhase.begin();
+    w.loadChunks(p.p.x, p.p.y, width, height, zoom);  // load required chunks
+    if (tick % FLUSH_TICKS == 0) {
+      w.flush();                                      // save chunks used since the last flush
+    }
+    chunksPhase.commit();
+
+    GameEvents.FramePhase physicsPhase = new GameEvents.FramePhase("tick: physics", tick);
+    physicsPhase.begin();
+    p.updatePosition();                               // update player position
+    p.slowDown();                                     // slow down player
+    collide();
+    physicsPhase.commit();
+
+    GameEvents.FramePhase publishPhase = new GameEvents.FramePhase("tick: publish", tick);
+    publishPhase.begin();
+    tick++;
+    publish();
+    publishPhase.commit();
+
+    if (feed != null) {
+      feed.tick(w, p.p, p.v, $, inc, food);
+    }
+  }
+
+  /**
+   * Carries out an action from the renderer
+   *
+   * @param c the action
+   */
+  private void apply(Command c) {
+    switch (c.type) {
+      case LAUNCH:
+        // launch the player if it isn't moving and there's more than 1 food
+        if (p.v.magnitude() == 0 && food >= 1) {
+          // normalized direction given by the renderer
+          p.v = new Vector(c.x, c.y).norm().multScalar(0.09f);
+          if (r.nextFloat() <= upgrades[0].factor / 100.0f) {
+            // depletes food by chance; if the random number is greater than the percentage determined
+            // by the 0th upgrade
+            food -= 1;
+          }
+          // add money based on income
+          $ += inc;
+          launches++;
+        }
+        break;
+      case BUY:
+        // buys the upgrade
+        $ = upgrades[c.index].buy($);
+        break;
+      case FOOD:
+        // buys food if there's enough money
+        if ($ >= 1) {
+          $ -= 1;
+          food += 1;
+        }
+        break;
+      case ZOOM:
+        zoom = c.x;
+        break;
+      case OVERVIEW:
+        overview = (int) c.x;
+        break;
+      case SAVE:
+        save();
+        break;
+      case NEW_GAME:
+        newGame();
+        break;
+    }
+  }
+
+  /**
+   * Checks for collisions around the player, bounces it off tiles, and updates the stats
+   */
+  private void collide() {
+    // positions to start the search for collision detection (a 3x3 area around the player)
+    int startSearchX = (int) Math.floor(p.p.x - 1);
+    int startSearchY = (int) Math.floor(p.p.y - 1);
+
+    // loop through 3x3 area
+    for (int i = startSearchX; i < startSearchX + 3; i++) {
+      for (int j = startSearchY; j < startSearchY + 3; j++) {
+        // get the specified tile
+        Tile tile = w.getTile(i, j);
+
+        if (tile != Tile.AIR) {
+          // perform collision if the tile isn't air
+          // find nearest point on the tile, used for detection
+          Vector near = p.getNear(new Vector(i, j));
+          // if the player is colliding:
+          if (p.isColliding(near)) {
+            // update the player's position and velocity
+            GameEvents.Collision event = new GameEvents.Collision();
+            event.begin();
+            float speedBefore = event.isEnabled() ? p.v.magnitude() : 0;
+            p.bounce(near);
+            if (event.shouldCommit()) {
+              event.tile = tile.name();
+              event.x = i;
+              event.y = j;
+              event.speedBefore = speedBefore;
+              event.speedAfter = p.v.magnitude();
+              event.commit();
+            }
+            // update the chunk since the tile is now used
+            if (tile != Tile.USED) {
+              hits++;
+            }
+            w.updateChunk(i, j);
+
+            // depending on the tile, change the player stats
+            switch (tile) {
+              case MONEY:
+                // increase money by the amount determined by the 1st upgrade
+                $ += upgrades[1].factor;
+                break;
+              case INCOME:
+                // increase income by the amount determined by the 1st upgrade
+                inc += upgrades[1].factor;
+                break;
+              case FOOD:
+                // increase food by the amount determined by the 2nd upgrade
+                food += upgrades[2].factor;
+                break;
+              case BAD:
+                // multiply all stats by the amount determined by the 3rd upgrade
+                $ *= upgrades[3].factor;
+                inc *= upgrades[3].factor;
+                food *= upgrades[3].factor;
+                break;
+              default:
+                break;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies the state the renderer needs into the back frame and publishes it
+   */
+  private void publish() {
+    Frame f = frames.back();
+    fill(f, zoom);
+    // the minimap is only touched by the simulation thread, so it isn't part of fill, which capture shares
+    if (overview > 0) {
+      // the overview belongs to one world, so it is replaced after a new game
+      if (minimap == null || !minimap.isFor(w)) {
+        if (minimap != null) {
+          minimap.dispose();
+        }
+        minimap = new Minimap(w);
+      }
+      minimap.fill(f, p.p.x, p.p.y, width, height, overview);
+    }
+    frames.publish();
+  }
+
+  /**
+   * Captures the current state into a new frame at any zoom level, for tools like the render benchmark.
+   * Can be called from any thread
+   *
+   * @param zoom zoom level to capture the tiles in view for
+   * @return the frame
+   */
+  public synchronized Frame capture(float zoom) {
+    w.loadChunks(p.p.x, p.p.y, width, height, zoom);
+    Frame f = new Frame();
+    fill(f, zoom);
+    return f;
+  }
+
+  /**
+   * Copies the state the renderer needs into a frame
+   *
+   * @param f    frame to fill
+   * @param zoom zoom level to capture the tiles in view for
+   */
+  private void fill(Frame f, float zoom) {
+    f.tick = tick;
+    f.game = game;
+    f.seed = w.seed;
+    f.p.x = p.p.x;
+    f.p.y = p.p.y;
+    f.v.x = p.v.x;
+    f.v.y = p.v.y;
+    f.money = $;
+    f.income = inc;
+    f.food = food;
+    for (int i = 0; i < 4; i++) {
+      f.factors[i] = upgrades[i].factor;
+      f.prices[i] = upgrades[i].price;
+      f.timesBought[i] = upgrades[i].timesBought;
+    }
+
+    // until there have been a few launches, assume the player hits as much as random launches do
+    f.hitsPerLaunch = (hits + UpgradePlanner.HITS_PER_LAUNCH * 5) / (launches + 5);
+
+    boolean resting = p.v.magnitude() == 0;
+    // a plan takes milliseconds, so it is made on the planner thread rather than in the tick or while drawing,
+    // and only at rest: once per stop and again after buying something
+    if (resting) {
+      advise(f.hitsPerLaunch);
+    }
+    f.advice = advice;
+    // won if the player isn't moving (not mid-turn) and the income is high enough
+    f.won = resting && inc > WIN_INCOME;
+    // lost if the player isn't moving (not mid-turn) and food and money is low enough
+    f.lost = resting && food < 1 && $ < 1;
+
+    // when food is about to run out, point out the closest food
+    if (resting && food < 2) {
+      f.foodHint = foodHint();
+    } else {
+      hint = null;
+      f.foodHint = null;
+    }
+
+    f.view(w, width, height, zoom);
+    f.chunkSize = w.chunkSize;
+    f.overview = 0;
+  }
+
+  /**
+   * Plans which upgrades to buy, unless the stats and upgrades are the same as for the last plan. The plan is
+   * made on the planner thread from copies of the stats and shows up in a later frame; without the simulation
+   * thread (tools that tick the simulation themselves) it's made straight away
+   *
+   * @param hitsPerLaunch fresh tiles the player hits per launch
+   */
+  private void advise(float hitsPerLaunch) {
+    if (planning != null) {
+      if (!planning.isDone()) {
+        return;  // one plan at a time; newer stats get planned once it's finished
+      }
+      try {
+        advice = planning.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        System.out.println("upgrade planner error:");
+        System.out.println(e.getCause());
+      }
+      planning = null;
+    }
+
+    float[] inputs = {$, inc, food, hitsPerLaunch};
+    int[] bought = new int[4];
+    for (int i = 0; i < 4; i++) {
+      bought[i] = upgrades[i].timesBought;
+    }
+    if (advisedStats == null || !Arrays.equals(inputs, advisedStats) || !Arrays.equals(bought, advisedBought)) {
+      advisedStats = inputs;
+      advisedBought = bought;
+      if (plans == null) {
+        advice = planner.plan(bought, inputs[0], inputs[1], inputs[2], inputs[3]);
+      } else {
+        // the task only sees the copies, never the live stats
+        planning = plans.submit(() -> planner.plan(bought, inputs[0], inputs[1], inputs[2], inputs[3]));
+      }
+    }
+  }
+
+  /**
+   * Finds the closest unused food tile, once per stop
+   *
+   * @return coordinates of the food tile, or null if there isn't any nearby
+   */
+  private Vector foodHint() {
+    if (hint == null) {
+      // the index belongs to one world, so it is replaced after a new game
+      if (resources == null || !resources.isFor(w)) {
+        if (resources != null) {
+          resources.dispose();
+        }
+        resources = new ResourceIndex(w);
+      }
+      hint = resources.nearest(Tile.FOOD, p.p.x, p.p.y, 48);
+    }
+    return hint;
+  }
+
+  /**
+   * Saves the game state to a file
+   * The world's state, player's position, upgrade times bought, and resources are saved
+   */
+  public void save() {
+    // first saves all the currently loaded chunks in the world
+    w.save();
+    try {
+      // opens printwriter for the data file (not chunks)
+      PrintWriter pw = new PrintWriter(DATA_FILE);
+      pw.print(dataText(w.seed, w.chunkSize, w.generator));
+      // saves file
+      pw.close();
+      // also write the binary snapshot for instant resume next launch
+      saveSnapshot();
+    } catch (IOException e) {
+      // print an error if it occurs
+      System.out.println(e);
+    }
+  }
+
+  /**
+   * Builds the contents of the text save
+   *
+   * @param seed      world seed
+   * @param chunkSize chunk size of the world
+   * @param generator generator of the world
+   * @return the data file text
+   */
+  private String dataText(int seed, int chunkSize, WorldGenerator generator) {
+    // data on new lines: the world seed, player position, upgrade stats, other stats, and how the world is
+    // stored and generated
+    return String.format("%d\n%f\n%f\n%d\n%d\n%d\n%d\n%f\n%f\n%f\n%d\n%s",
+                         seed, p.p.x, p.p.y,
+                         upgrades[0].timesBought, upgrades[1].timesBought, upgrades[2].timesBought,
+                         upgrades[3].timesBought, $, inc, food, chunkSize, generator.getName());
+  }
+
+  /**
+   * Writes the seed, player, upgrades, and the currently loaded chunks into the binary snapshot
+   *
+   * @throws IOException if the snapshot can't be written
+   */
+  public void saveSnapshot() throws IOException {
+    Snapshot snap = new Snapshot();
+    snap.seed = w.seed;
+    snap.chunkSize = w.chunkSize;
+    snap.generator = w.generator.getName();
+    snap.p = p.p;
+    snap.v = p.v;
+    snap.money = $;
+    snap.income = inc;
+    snap.food = food;
+    snap.factors = new float[4];
+    snap.prices = new float[4];
+    snap.timesBought = new int[4];
+    for (int i = 0; i < 4; i++) {
+      snap.factors[i] = upgrades[i].factor;
+      snap.prices[i] = upgrades[i].price;
+      snap.timesBought[i] = upgrades[i].timesBought;
+    }
+    snap.chunks = w.getLoadedChunks();
+    snap.write(SNAPSHOT_FILE);
+  }
+
+  /**
+   * Restores the game from the binary snapshot
+   *
+   * @return whether the snapshot could be used; false if it's missing or corrupted
+   */
+  public boolean loadSnapshot() {
+    try {
+      Snapshot snap = Snapshot.read(SNAPSHOT_FILE);
+      if (snap.factors.length != 4) {
+        return false;
+      }
+      w = new World(snap.seed, snap.chunkSize, "world", WorldGenerator.forName(snap.generator));
+      p.p = snap.p;
+      p.v = new Vector(0, 0);  // like loading the text save, the game always resumes at rest
+      $ = snap.money;
+      inc = snap.income;
+      food = snap.food;
+      // set the upgrade fields directly instead of replaying every purchase
+      for (int i = 0; i < 4; i++) {
+        upgrades[i].restore(snap.factors[i], snap.prices[i], snap.timesBought[i]);
+      }
+      // hand the chunks around the player to the world so the first frame doesn't read any chunk files
+      for (int key : snap.chunks.keySet()) {
+        w.addChunk(Convert.oneToFirst(key), Convert.oneToSecond(key), snap.chunks.get(key));
+      }
+      return true;
+    } catch (IOException e) {
+      // fall back to the text save
+      return false;
+    }
+  }
+
+  /**
+   * Loads the game state from a file and publishes the first frame
+   * The world's state, player's position, upgrade times bought, and resources are loaded
+   */
+  public void load() {
+    game++;
+    launches = 0;
+    hits = 0;
+    try {
+      // put the save back together if the game stopped part way through migrating it
+      ChunkMigration.recover("world");
+    } catch (IOException e) {
+      System.out.println(e);
+    }
+    // the snapshot has everything at once; only parse the text file if it can't be used
+    if (!loadSnapshot()) {
+      loadText();
+    }
+    w.loadChunks(p.p.x, p.p.y, width, height, zoom);
+    publish();
+  }
+
+  /**
+   * Loads the game state from the text save
+   */
+  private void loadText() {
+    try {
+      // new input stream from data file
+      Scanner s = new Scanner(new File(DATA_FILE));
+      // world seed from first line
+      int seed = s.nextInt();
+      // player position from next 2 lines
+      p.p.x = s.nextFloat();
+      p.p.y = s.nextFloat();
+      // reset velocity
+      p.v = new Vector(0, 0);
+      for (int j = 0; j < 4; j++) {
+        // loop through each upgrade and buy the upgrade the number of times
+        // as specified in the data file, given infintie money
+        int c = s.nextInt();
+        for (int i = 0; i < c; i++) {
+          upgrades[j].buy(99999);
+        }
+      }
+      // set money, income, and food based on the last 3 lines
+      $ = s.nextFloat();
+      inc = s.nextFloat();
+      food = s.nextFloat();
+      // chunk size and generator from the last lines; saves from before they were recorded used 24x24 chunks
+      // and the legacy generator
+      int chunkSize = s.hasNextInt() ? s.nextInt() : 24;
+      WorldGenerator generator = s.hasNext() ? WorldGenerator.forName(s.next()) : WorldGenerator.LEGACY;
+      // close file
+      s.close();
+
+      if (Integer.bitCount(chunkSize) != 1 || chunkSize > World.MAX_CHUNK_SIZE) {
+        // chunk sizes must be powers of two no bigger than World allows, so regroup the old chunks and record
+        // the new size. both are swapped in together, so the save is either all old or all new
+        try {
+          ChunkMigration.migrate("world", chunkSize, World.DEFAULT_CHUNK_SIZE, new File(DATA_FILE).getName(),
+                                 dataText(seed, World.DEFAULT_CHUNK_SIZE, generator));
+        } catch (IOException e) {
+          // starting over would throw the save away, so stop with it untouched
+          throw new IllegalStateException("couldn't migrate the save to " + World.DEFAULT_CHUNK_SIZE
+                                          + " tile chunks; it was left as it was: " + e, e);
+        }
+        w = new World(seed, World.DEFAULT_CHUNK_SIZE, "world", generator);
+      } else {
+        w = new World(seed, chunkSize, "world", generator);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // print an error if it occurs
+      System.out.println(e);
+      // start over rather than run without a world
+      newGame();
+    }
+  }
+
+  /**
+   * Starts a new game and saves it
+   * The world, resources, player's position, and upgrades are reset
+   */
+  public void newGame() {
+    game++;
+    hint = null;
+    // drop the last game's advice, and its plan if one is still being made
+    advice = null;
+    advisedStats = null;
+    planning = null;
+    // pick a seed with a good starting area and create new world
+    w = new World(SeedScanner.pick(r, 64));
+    // resets stats
+    $ = 0;
+    inc = 0;
+    food = 3;
+    launches = 0;
+    hits = 0;
+    // reset player position and velocity
+    p.p = new Vector(0, 0);
+    p.v = new Vector(0, 0);
+    // reset upgrades
+    upgrades = createUpgrades();
+    // get world save directory
+    File dir = new File("world");
+    // loop through every file in the directory
+    for (File f : dir.listFiles()) {
+      if (f.isFile() && !f.getName().equals("_data.txt")) {
+        // delete file if it isn't the data file (deletes chunk data)
+        f.delete();
+      }
+    }
+    // save new world
+    save();
+  }
+}
@@ -1,10 +1,5 @@
-import processing.core.PApplet;
-import java.util.Scanner;
-import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Random;
-import processing.core.PImage;
+import processing.core.PApplet;
 
 /**
  * This game will be played from the point of view of a city resident struggling to stay nourished. The player 
@@ -20,27 +15,33 @@ import processing.core.PImage;
  */
 public class Sketch extends PApplet {
   // Gameplay variables
-  private final float WIN_INCOME = 20.00f;  // how much income required for winning
-  private String state;                     // which menu page the game is on
-  private float $;                          // player money
-  private float inc;                        // player income
-  private float food;                       // player food points
+  private State state;                      // which menu page the game is on
+  private Frame f;                          // latest frame from the simulation, drawn this frame
+  private int expectedGame;                 // frames from games before this one are ignored for winning/losing
 
   // Menu and upgrade variables
   private Button[] playButtons = new Button[4];     // buttons during gameplay
   private Button[] upgradeButtons = new Button[6];  // buttons on upgrade screen
   private Button confirmButton;   // button for confirming new game
-  private PImage aboutPage;       // about page image
-  private PImage upgradesPage;    // upgrade page background
-  private PImage confirmPage;     // confirm page background
-  private PImage winPage;         // win page image with text
-  private PImage losePage;        // lose page image with text
+  private StatsPanel stats;       // cached money, income, and food display
+  private AdvicePanel advice;     // cached upgrade advice
+  private Sprite aboutPage;       // about page image
+  private Sprite upgradesPage;    // upgrade page background
+  private Sprite confirmPage;     // confirm page background
+  private Sprite winPage;         // win page image with text
+  private Sprite losePage;        // lose page image with text
 
   // Mechanics
-  private Random r = new Random();    // for random seed generation later on (and other things)
-  private World w;                               // world
-  private Ball p = new Ball(this, 0.1f);  //p layer
+  private Simulation sim;             // runs the game on its own thread
+  private Ball p = new Ball(this, 0.1f);  //p layer, as shown; the simulation moves the real one
   private float zoom = 128;           // pixels per tile
+  private WorldRenderer worldRenderer;                            // draws the world with sprites
+  private PixelRenderer pixelRenderer = new PixelRenderer(this);  // software renderer for the world
+  private boolean softwareRender = false;                         // whether the world uses the software renderer
+  private MinimapRenderer minimapRenderer;  // draws the zoomed out overview of the world
+  private FrameCapture capture;       // saves every frame while recording, or null
+  private IdleLayer idle;             // the world as drawn while aiming, so it isn't redrawn every frame
+  private int overview = 0;           // pixels per tile in the overview; 0 when the overview is closed
   private final int width = 400;      // dimensions of screen
   private final int height = 400;
 
@@ -56,137 +57,158 @@ public class Sketch extends PApplet {
    * Called at the beginning of the program 
    */
   public void setup() {
-    // initialize menus and load world from file
+    // decode all images into the shared atlas, then initialize menus
+    Assets.load(this);
     initMenus();
-    load();
-    // set state to nothing - no menus open
-    state = "";
+    worldRenderer = new WorldRenderer(this);
+    idle = new IdleLayer(this);
+    minimapRenderer = new MinimapRenderer(this);
+    // load world from file and start simulating
+    sim = new Simulation(width, height);
+    sim.load();
+    // load published the first frame; take it now so that input arriving before the first draw has one to read
+    f = sim.latest();
+    sim.start();
+    // set state to playing - no menus open
+    state = State.PLAY;
   }
 
   /**
    * Called periodically, as fast as possible up to 60 frames per second
+   * Only draws the latest frame from the simulation; the game itself runs on the simulation thread
    */
   public void draw() {
-    // show win screen if the player isn't moving (not mid-turn), there's no menu open, and the income is high enough
-    if (inc > WIN_INCOME && p.v.magnitude() == 0 && state.equals("")) {
-      // set state to win and skip the rest of the frame
-      state = "win";
-      return;
+    f = sim.latest();
+    boolean resting = f.v.magnitude() == 0;
+
+    // frames from before a new game was started don't count
+    if (state == State.PLAY && f.game >= expectedGame) {
+      // show win screen if the player isn't moving (not mid-turn), there's no menu open, and the income is high enough
+      if (f.won) {
+        // set state to win and skip the rest of the frame
+        state = State.WIN;
+        return;
+      }
+      // show lose screen if the player isn't moving (not mid-turn), there's no menu open, and food and money is low enough
+      if (f.lost) {
+        // set state to lose and skip the rest of the frame
+        state = State.LOSE;
+        return;
+      }
     }
 
-    // show lose screen if the player isn't moving (not mid-turn), there's no menu open, and food and money is low enough
-    if (food < 1 && $ < 1 && p.v.magnitude() == 0 && state.equals("")) {
-      // set state to lose and skip the rest of the frame
-      state = "lose";
+    // while aiming, the world and ball stay the same, so they are drawn once and kept. if nothing else
+    // changed either, the frame isn't drawn at all (unless it's being recorded, which needs every frame)
+    boolean aiming = state == State.PLAY && resting && overview == 0;
+    if (!aiming) {
+      idle.invalidate();
+    } else if (capture == null && idle.unchanged(f, softwareRender, mouseX, mouseY)) {
       return;
     }
+    boolean reuse = aiming && idle.has(f, softwareRender);
 
-    background(0, 0, 0);                              // clear screen
-    w.loadChunks(p.p.x, p.p.y, width, height, zoom);  // load required chunks
-    w.draw(p.p.x, p.p.y, width, height, zoom);        // draw world
-    p.updatePosition();                               // update player position
-    p.slowDown();                                     // slow down player
-    p.draw(width, height, zoom);                      // draw player
-    drawStats();                                      // draw money income and food
+    GameEvents.FramePhase worldPhase = new GameEvents.FramePhase("draw: world", frameCount);
+    worldPhase.begin();
+    if (reuse) {
+      idle.restore();                                 // world and ball as they were drawn when the ball stopped
+    } else if (overview > 0) {
+      background(0, 0, 0);                            // clear screen
+      // draw overview instead of the world; the simulation puts the chunk summaries in the frame
+      minimapRenderer.draw(f, width, height);
+    } else if (softwareRender) {
+      background(0, 0, 0);
+      pixelRenderer.draw(f, width, height);           // draw world straight into the pixels
+    } else {
+      background(0, 0, 0);
+      worldRenderer.draw(f, width, height);           // draw world
+    }
+    worldPhase.commit();
 
-    // positions to start the search for collision detection (a 3x3 area around the player)
-    int startSearchX = (int) Math.floor(p.p.x - 1);
-    int startSearchY = (int) Math.floor(p.p.y - 1);
-
-    // loop through 3x3 area
-    for (int i = startSearchX; i < startSearchX + 3; i++) {
-      for (int j = startSearchY; j < startSearchY + 3; j++) {
-        // get the specified tile
-        Tile tile = w.getTile(i, j);
-
-        if (tile != Tile.AIR) {
-          // perform collision if the tile isn't air
-          // find nearest point on the tile, used for detection
-          Vector near = p.getNear(new Vector(i, j));
-          // if the player is colliding:
-          if (p.isColliding(near)) {
-            // update the player's position and velocity
-            p.bounce(near);
-            // update the chunk since the tile is now used
-            w.updateChunk(i, j);
-
-            // depending on the tile, change the player stats
-            switch (tile) {
-              case MONEY:
-                // increase money by the amount determined by the 1st upgrade
-                $ += ((UpgradeButton) upgradeButtons[1]).upgrade.factor;
-                break;
-              case INCOME:
-                // increase income by the amount determined by the 1st upgrade
-                inc += ((UpgradeButton) upgradeButtons[1]).upgrade.factor;
-                break;
-              case FOOD:
-                // increase food by the amount determined by the 2nd upgrade
-                food += ((UpgradeButton) upgradeButtons[2]).upgrade.factor;
-                break;
-              case BAD:
-                // multiply all stats by the amount determined by the 3rd upgrade
-                $ *= ((UpgradeButton) upgradeButtons[3]).upgrade.factor;
-                inc *= ((UpgradeButton) upgradeButtons[3]).upgrade.factor;
-                food *= ((UpgradeButton) upgradeButtons[3]).upgrade.factor;
-                break;
-              default:
-                break;
-            }
-          }
-        }
+    GameEvents.FramePhase hudPhase = new GameEvents.FramePhase("draw: ball and hud", frameCount);
+    hudPhase.begin();
+    if (overview == 0 && !reuse) {
+      // draw player (the overview has its own marker)
+      p.p = f.p;
+      p.v = f.v;
+      p.draw(width, height, f.zoom);
+      if (aiming) {
+        idle.store(f, softwareRender);                // keep the world and ball for the next frames
       }
     }
+    drawStats();                                      // draw money income and food
+
+    // show the upgrades as they are in the simulation
+    for (int i = 0; i < 4; i++) {
+      ((UpgradeButton) upgradeButtons[i]).upgrade.restore(f.factors[i], f.prices[i], f.timesBought[i]);
+    }
+
+    hudPhase.commit();
 
     // drawing menus
+    GameEvents.FramePhase menuPhase = new GameEvents.FramePhase("draw: menus", frameCount);
+    menuPhase.begin();
     switch (state) {
-      case "":
+      case PLAY:
         // draw all buttons for the playing screen (save, new game, etc.)
         for (Button b : playButtons) {
           b.draw();
         }
         // draw a line from the center of the screen to the mouse cursor when the player isn't moving
         // to help the player aim
-        if (p.v.magnitude() == 0.0f) {
+        if (resting) {
           stroke(color(255, 100, 100));
           strokeWeight(3);
           line(width / 2, height / 2, mouseX, mouseY);
           strokeWeight(1);
+          // when food is about to run out, point out the closest food
+          if (f.foodHint != null && overview == 0) {
+            drawFoodHint();
+          }
         }
         break;
-      case "upgrades":
+      case UPGRADES:
         // draw the upgrades background and upgrade buttons
-        image(upgradesPage, 0, 0);
+        upgradesPage.draw(this, 0, 0);
         for (Button b : upgradeButtons) {
           b.draw();
         }
         // draw the player stats over everything again so that the player can read them when buying upgrades
         drawStats();
+        drawAdvice();
         break;
-      case "confirm":
+      case CONFIRM:
         // draw confirm new game background and button
-        image(confirmPage, 0, 0);
+        confirmPage.draw(this, 0, 0);
         confirmButton.draw();
         break;
       // draw backgrounds for the about, win, and lose pages
-      case "about":
-        image(aboutPage, 0, 0);
+      case ABOUT:
+        aboutPage.draw(this, 0, 0);
         break;
-      case "win":
-        image(winPage, 0, 0);
+      case WIN:
+        winPage.draw(this, 0, 0);
         break;
-      case "lose":
-        image(losePage, 0, 0);
+      case LOSE:
+        losePage.draw(this, 0, 0);
         break;
     }
+    menuPhase.commit();
+
+    // hand the finished frame to the capture, which only copies it; encoding happens in the background
+    if (capture != null) {
+      loadPixels();
+      capture.capture(pixels, frameCount);
+    }
   }
 
   /**
    * Runs when the player presses a mosue button
+   * Actions that change the game are sent to the simulation
    */
   public void mousePressed() {
+    idle.invalidate();
     switch (state) {
-      case "":
+      case PLAY:
         // during gameplay, check for button clicks
         String action = "";
         for (Button b : playButtons) {
@@ -199,79 +221,68 @@ public class Sketch extends PApplet {
         switch (action) {
           case "":
             // if no button is pressed, launch the player (if it isn't moving and there's more than 1 food)
-            if (p.v.magnitude() == 0 && food >= 1) {
-              // normalized vector based on the difference between the center of the screen and the mouse position
-              p.v = new Vector(mouseX - width / 2, mouseY - height / 2).norm().multScalar(0.09f);
-              if (r.nextFloat() <= ((UpgradeButton) upgradeButtons[0]).upgrade.factor / 100.0f) {
-                // depletes food by chance; if the random number is greater than the percentage determined
-                // by the 0th upgrade
-                food -= 1;
-              }
-              // add money based on income and reset zoom while the player is moving
-              $ += inc;
-              zoom = 128;
+            if (f.v.magnitude() == 0 && f.food >= 1) {
+              // direction based on the difference between the center of the screen and the mouse position
+              sim.send(new Command(Command.Type.LAUNCH, mouseX - width / 2, mouseY - height / 2, 0));
+              // reset zoom while the player is moving
+              setZoom(128);
             }
             break;
           case "save":
             // save if save button is pressed
-            save();
+            sim.send(new Command(Command.Type.SAVE, 0, 0, 0));
             break;
           // change states based on action
           case "new":
-            state = "confirm";
+            state = State.CONFIRM;
             break;
           case "about":
-            state = "about";
+            state = State.ABOUT;
             break;
           case "upgrades":
-            state = "upgrades";
+            state = State.UPGRADES;
             break;
           default:
             // print error if the action isn't handled properly
             print("NO STATE UNKNOWN ACTION: " + action);
         }
         break;
-      case "upgrades":
+      case UPGRADES:
         // loop through all upgrade buttons
-        for (Button b : upgradeButtons) {
+        for (int i = 0; i < upgradeButtons.length; i++) {
           // click the button and see what the result is
-          switch (b.click(mouseX, mouseY)) {
+          switch (upgradeButtons[i].click(mouseX, mouseY)) {
             case "upgrade":
               // buy the upgrade if the button is an upgrade button
-              Upgrade u = ((UpgradeButton) b).upgrade;
-              // casts to UpgradeButton and buys the upgrade
-              $ = u.buy($);
+              sim.send(new Command(Command.Type.BUY, 0, 0, i));
               break;
             case "back":
               // resets state if back button is pressed
-              state = "";
+              state = State.PLAY;
               break;
             case "food":
               // buys food if there's enough money
-              if ($ >= 1) {
-                $ -= 1;
-                food += 1;
-              }
+              sim.send(new Command(Command.Type.FOOD, 0, 0, 0));
               break;
           }          
         }
         break;
-      case "confirm":
+      case CONFIRM:
         // load new game if confirm button is clicked
         if (!confirmButton.click(mouseX, mouseY).equals("")) {
           newGame();
         }
-        state = ""; // either way, close the confirm screen
+        state = State.PLAY; // either way, close the confirm screen
         break;
-      case "about":
+      case ABOUT:
         //close the about screen upon click
-        state = "";
+        state = State.PLAY;
         break;
-      case "win":
-      case "lose":
+      case WIN:
+      case LOSE:
         //start a new game if the player wins or loses
         newGame();
-        state = "";
+        state = State.PLAY;
         break;
     }
   }
@@ -280,16 +291,113 @@ public class Sketch extends PApplet {
    * Called when a key is pressed on the keyboard
    */
   public void keyPressed() {
+    idle.invalidate();
     // the zoom level changes between 128 and 25 when the user presses z
     // but only when the player isn't moving (getting ready to move)
-    if (key == 'z' && p.v.magnitude() == 0) {
+    if (key == 'z' && f.v.magnitude() == 0) {
       // toggle between zoom 128 and 25 upon pressing z
       if (zoom == 25) {
-        zoom = 128;
+        setZoom(128);
       } else {
-        zoom = 25;
+        setZoom(25);
       }
     }
+
+    // m cycles the overview between 4, 2, and 1 pixels per tile, and then closes it
+    if (key == 'm') {
+      if (overview == 0) {
+        overview = 4;
+      } else {
+        overview /= 2;
+      }
+      sim.send(new Command(Command.Type.OVERVIEW, overview, 0, 0));
+    }
+
+    // r switches between the regular and the software world renderer
+    if (key == 'r') {
+      softwareRender = !softwareRender;
+    }
+
+    // i prints the chunk cache metrics
+    if (key == 'i') {
+      synchronized (sim) {
+        println(sim.getWorld().getCache());
+        println(TerrainCache.SHARED);
+        println(idle);
+        if (sim.getFeed() != null) {
+          println(sim.getFeed());
+        }
+      }
+    }
+
+    // c records frames as a PNG sequence, v as a video; pressing either again stops recording
+    if (key == 'c' || key == 'v') {
+      toggleCapture(key == 'c' ? FrameCapture.Format.PNG : FrameCapture.Format.Y4M);
+    }
+
+    // f starts and stops streaming the game to spectators (see SpectatorViewer)
+    if (key == 'f') {
+      try {
+        SpectatorFeed feed = sim.toggleFeed(SpectatorFeed.PORT);
+        println(feed == null ? "spectator feed stopped" : "spectator feed on port " + SpectatorFeed.PORT);
+      } catch (IOException e) {
+        println(e);
+      }
+    }
+
+    // b times both world renderers and prints the results
+    if (key == 'b') {
+      RenderBenchmark.run(sim, worldRenderer, pixelRenderer, width, height);
+    }
+  }
+
+  /**
+   * Starts or stops recording frames into a new folder under captures
+   *
+   * @param format how the frames are saved
+   */
+  public void toggleCapture(FrameCapture.Format format) {
+    if (capture != null) {
+      // the last frames are still being encoded, so finish them off the animation thread
+      FrameCapture done = capture;
+      capture = null;
+      new Thread(() -> {
+        try {
+          done.close();
+          println(done);
+        } catch (IOException e) {
+          println(e);
+        }
+      }, "capture close").start();
+      return;
+    }
+    try {
+      // 8 frames of slack, with one encoder thread left free for the game itself
+      String dir = "captures/" + System.currentTimeMillis();
+      capture = new FrameCapture(dir, format, width, height, 60, 8,
+                                 Math.max(1, Runtime.getRuntime().availableProcessors() - 1), false);
+      println("recording to " + dir);
+    } catch (IOException e) {
+      println(e);
+    }
+  }
+
+  /**
+   * Changes the zoom level; the simulation captures the tiles in view for it from the next tick on
+   *
+   * @param z new zoom level
+   */
+  public void setZoom(float z) {
+    zoom = z;
+    sim.send(new Command(Command.Type.ZOOM, z, 0, 0));
+  }
+
+  /**
+   * Starts a new game on the simulation thread. Win and lose are ignored until its first frame arrives
+   */
+  public void newGame() {
+    expectedGame = f.game + 1;
+    sim.send(new Command(Command.Type.NEW_GAME, 0, 0, 0));
   }
 
   /**
@@ -297,125 +405,56 @@ public class Sketch extends PApplet {
    */
   public void initMenus() {
     // buttons for buttons during gameplay
-    playButtons[0] = new Button(10, 365, 50, 25, loadImage("graphics/save.png"), this, "save");
-    playButtons[1] = new Button(70, 365, 75, 25, loadImage("graphics/new.png"), this, "new");
-    playButtons[2] = new Button(155, 365, 50, 25, loadImage("graphics/aboutButton.png"), this, "about");
-    playButtons[3] = new Button(215, 365, 75, 25, loadImage("graphics/upgradesButton.png"), this, "upgrades");
-
-    // the four upgrades that will be available to be bought
-    Upgrade[] upgrades = new Upgrade[4];
-    upgrades[0] = new Upgrade(100f, 1.0f, 0.1f, -5f, 0, 15); //food depletion chance
-    upgrades[1] = new Upgrade(1.0f, 1.5f, 0.15f, 0.1f, 0, 100); //money and income per hit
-    upgrades[2] = new Upgrade(0.5f, 1.0f, 0.1f, 0.2f, 0, 100); //food per hit
-    upgrades[3] = new Upgrade(0.6f, 1.5f, 0.15f, 0.02f, 0, 15); //multiplier when hit red
+    playButtons[0] = new Button(10, 365, 50, 25, Assets.get("save"), this, "save");
+    playButtons[1] = new Button(70, 365, 75, 25, Assets.get("new"), this, "new");
+    playButtons[2] = new Button(155, 365, 50, 25, Assets.get("aboutButton"), this, "about");
+    playButtons[3] = new Button(215, 365, 75, 25, Assets.get("upgradesButton"), this, "upgrades");
+
+    // the four upgrades that will be available to be bought. these are only copies for display;
+    // the simulation owns the real ones and they are updated from every frame
+    Upgrade[] upgrades = Simulation.createUpgrades();
 
     // the upgrade buttons, including the upgrades themselves, the buy food button, and the back button
-    upgradeButtons[0] = new UpgradeButton(100, 0, 300, 100, loadImage("graphics/upgrade0.png"), this, upgrades[0], 230, 84, 120, 84, 12);
-    upgradeButtons[1] = new UpgradeButton(100, 100, 300, 100, loadImage("graphics/upgrade1.png"), this, upgrades[1], 215, 84, 110, 84, 12);
-    upgradeButtons[2] = new UpgradeButton(100, 200, 300, 100, loadImage("graphics/upgrade2.png"), this, upgrades[2], 215, 84, 110, 84, 12);
-    upgradeButtons[3] = new UpgradeButton(100, 300, 300, 100, loadImage("graphics/upgrade3.png"), this, upgrades[3], 230, 84, 120, 84, 12);
-    upgradeButtons[4] = new Button(25, 160, 50, 25, loadImage("graphics/back.png"), this, "back");
-    upgradeButtons[5] = new Button(0, 100, 100, 50, loadImage("graphics/foodButton.png"), this, "food");
+    upgradeButtons[0] = new UpgradeButton(100, 0, 300, 100, Assets.get("upgrade0"), this, upgrades[0], 230, 84, 120, 84, 12);
+    upgradeButtons[1] = new UpgradeButton(100, 100, 300, 100, Assets.get("upgrade1"), this, upgrades[1], 215, 84, 110, 84, 12);
+    upgradeButtons[2] = new UpgradeButton(100, 200, 300, 100, Assets.get("upgrade2"), this, upgrades[2], 215, 84, 110, 84, 12);
+    upgradeButtons[3] = new UpgradeButton(100, 300, 300, 100, Assets.get("upgrade3"), this, upgrades[3], 230, 84, 120, 84, 12);
+    upgradeButtons[4] = new Button(25, 160, 50, 25, Assets.get("back"), this, "back");
+    upgradeButtons[5] = new Button(0, 100, 100, 50, Assets.get("foodButton"), this, "food");
+
+    // money, income, and food display
+    stats = new StatsPanel(this, width);
+    advice = new AdvicePanel(this);
 
     // button to confirm starting a new game
-    confirmButton = new Button(100, 80, 200, 100, loadImage("graphics/continue.png"), this, "confirm");
+    confirmButton = new Button(100, 80, 200, 100, Assets.get("continue"), this, "confirm");
     
     // images for menu backgrounds: about, upgrades, confirm, win and lose menus
-    aboutPage = loadImage("graphics/about.png");
-    upgradesPage = loadImage("graphics/upgrades.png");
-    confirmPage = loadImage("graphics/confirm.png");
-    winPage = loadImage("graphics/win.png");
-    losePage = loadImage("graphics/lose.png");
-  }
-
-  /**
-   * Saves the game state to a file
-   * The world's state, player's position, upgrade button times bought, and resources are saved
-   */
-  public void save() {
-    // first saves all the currently loaded chunks in the world
-    w.save();
-    try {
-      // opens printwriter for the data file (not chunks)
-      PrintWriter pw = new PrintWriter("world/_data.txt");
-      // prints data on new lines: the world seed, player position, upgrade stats, and other stats
-      pw.printf("%d\n%f\n%f\n%d\n%d\n%d\n%d\n%f\n%f\n%f",
-                w.seed, p.p.x, p.p.y,
-                ((UpgradeButton) upgradeButtons[0]).upgrade.timesBought,
-                ((UpgradeButton) upgradeButtons[1]).upgrade.timesBought,
-                ((UpgradeButton) upgradeButtons[2]).upgrade.timesBought,
-                ((UpgradeButton) upgradeButtons[3]).upgrade.timesBought,
-                $, inc, food);
-      // saves file
-      pw.close();
-    } catch (IOException e) {
-      // print an error if it occurs
-      print(e);
-    }
+    aboutPage = Assets.get("about");
+    upgradesPage = Assets.get("upgrades");
+    confirmPage = Assets.get("confirm");
+    winPage = Assets.get("win");
+    losePage = Assets.get("lose");
   }
 
   /**
-   * Loads the game state from a file
-   * The world's state, player's position, upgrade button times bought, and resources are loaded
+   * Draws a line to the closest unused food tile, as found by the simulation
    */
-  public void load() {
-    try {
-      // new input stream from data file
-      Scanner s = new Scanner(new File("world/_data.txt"));
-      // world seed from first line
-      w = new World(this, s.nextInt());
-      // player position from next 2 lines
-      p.p.x = s.nextFloat();
-      p.p.y = s.nextFloat();
-      // reset velocity
-      p.v = new Vector(0, 0);
-      for (int j = 0; j < 4; j++) {
-        // loop through each upgrade and buy the upgrade the number of times
-        // as specified in the data file, given infintie money
-        int c = s.nextInt();
-        for (int i = 0; i < c; i++) {
-          ((UpgradeButton) upgradeButtons[j]).upgrade.buy(99999);
-        }
-      }
-      // set money, income, and food based on the last 3 lines
-      $ = s.nextFloat();
-      inc = s.nextFloat();
-      food = s.nextFloat();
-      // close file
-      s.close();
-    } catch (IOException e) {
-      // print an error if it occurs
-      print(e);
-    }
+  public void drawFoodHint() {
+    // line from the player to the center of the food tile
+    stroke(color(100, 150, 255));
+    strokeWeight(2);
+    line(width / 2, height / 2, width / 2 + (f.foodHint.x + 0.5f - f.p.x) * f.zoom,
+         height / 2 + (f.foodHint.y + 0.5f - f.p.y) * f.zoom);
+    strokeWeight(1);
   }
 
   /**
-   * Starts a new game and saves it
-   * The world, resources, player's position, and upgrade buttons are reset
+   * Draws which upgrade to buy next, from the plan the simulation made when the ball last stopped
    */
-  public void newGame() {
-    // generate new seed and create new world
-    w = new World(this, r.nextInt());
-    // resets stats
-    $ = 0;
-    inc = 0;
-    food = 3;
-    // reset player position and velocity
-    p.p = new Vector(0, 0);
-    p.v = new Vector(0, 0);
-    // reinitialize menus (to reset upgrades)
-    initMenus();
-    // get world save directory
-    File dir = new File("world");
-    // loop through every file in the directory
-    for (File f : dir.listFiles()) {
-      if (f.getName() != "_data.txt") {
-        // delete file if it isn't the data file (deletes chunk data)
-        f.delete();
-      }
-    }
-    // save new world
-    save();
+  public void drawAdvice() {
+    // the panel only lays the text out again for a new plan, or when the next upgrade becomes affordable
+    advice.draw(f.advice, f.money, f.prices);
   }
 
   /**
@@ -423,10 +462,7 @@ public class Sketch extends PApplet {
    * Displays the current amount of money, income, and food
    */
   public void drawStats() {
-    // set text size and colour
-    fill(255);
-    textSize(15);
-    // use format string to draw 3 lines of text
-    text(String.format("Money: $%.2f\nIncome: $%.2f\nFood: %.2f", $, inc, food), 5, 20);
+    // the panel only lays the text out again when a stat changed
+    stats.draw(f.money, f.income, f.food);
   }
 }
\ No newline at end of file
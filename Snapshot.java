@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * a binary copy of everything needed to resume a game instantly: the seed, the ball, the player stats,
+ * the upgrades, and the chunks around the player. the whole file is read in one go into a buffer instead of
+ * being parsed line by line and replaying upgrade purchases. it's only a few KB, and not mapping it means
+ * nothing holds the file open when the next save moves a new one over it (which fails on Windows)
+ *
+ * file layout: magic, version, payload length, CRC32 of the payload, then the payload itself
+ */
+public class Snapshot {
+  private static final int MAGIC = 0x4242534E;  // "BBSN"
+  private static final int VERSION = 3;         // increase when the payload layout changes
+  private static final int LEGACY_VERSION = 2;  // last version without the generator, which was always legacy
+  private static final int HEADER_SIZE = 16;    // magic + version + length + checksum
+
+  public int seed;                      // world seed
+  public int chunkSize;                 // chunk size of the world
+  public String generator;              // name of the world's generator
+  public Vector p;                      // ball position
+  public Vector v;                      // ball velocity; the game resumes at rest, like the text save
+  public float money;                   // player stats
+  public float income;
+  public float food;
+  public float[] factors;               // current factor of each upgrade
+  public float[] prices;                // current price of each upgrade
+  public int[] timesBought;             // how many times each upgrade has been bought
+  public HashMap<Integer, Chunk> chunks = new HashMap<Integer, Chunk>();  // loaded chunks, same keys as World
+
+  /**
+   * Writes the snapshot to a file. The file is written next to the target first and then moved
+   * over it so that a crash mid-write never leaves a half written snapshot behind
+   *
+   * @param path file to write to
+   * @throws IOException if the file can't be written
+   */
+  public void write(String path) throws IOException {
+    int chunkBytes = (chunkSize * chunkSize + 7) / 8;
+    byte[] name = generator.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer payload = ByteBuffer.allocate(
+        8 + 4 + name.length + 16 + 12 + 4 + 12 * factors.length + 4 + (8 + chunkBytes) * chunks.size());
+
+    payload.putInt(seed).putInt(chunkSize);
+    payload.putInt(name.length).put(name);
+    payload.putFloat(p.x).putFloat(p.y).putFloat(v.x).putFloat(v.y);
+    payload.putFloat(money).putFloat(income).putFloat(food);
+
+    payload.putInt(factors.length);
+    for (int i = 0; i < factors.length; i++) {
+      payload.putFloat(factors[i]).putFloat(prices[i]).putInt(timesBought[i]);
+    }
+
+    payload.putInt(chunks.size());
+    byte[] bits = new byte[chunkBytes];
+    for (int key : chunks.keySet()) {
+      payload.putInt(Convert.oneToFirst(key)).putInt(Convert.oneToSecond(key));
+      // pack the used tiles 8 to a byte
+      chunks.get(key).toBytes(bits);
+      payload.put(bits);
+    }
+    payload.flip();
+
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(payload.remaining()).putInt((int) crc.getValue());
+    header.flip();
+
+    Path target = Paths.get(path);
+    Path temp = Paths.get(path + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (header.hasRemaining() || payload.hasRemaining()) {
+        out.write(new ByteBuffer[] {header, payload});
+      }
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a snapshot from a file
+   *
+   * @param path file to read from
+   * @return the snapshot
+   * @throws IOException if the file is missing, from another version, or corrupted
+   */
+  public static Snapshot read(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException("snapshot too short");
+      }
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("snapshot too long");
+      }
+      ByteBuffer in = ByteBuffer.allocate((int) size);
+      while (in.hasRemaining()) {
+        if (channel.read(in) < 0) {
+          throw new IOException("snapshot truncated");
+        }
+      }
+      in.flip();
+
+      // check the header before trusting any of the payload
+      if (in.getInt() != MAGIC) {
+        throw new IOException("not a snapshot file");
+      }
+      int version = in.getInt();
+      if (version != VERSION && version != LEGACY_VERSION) {
+        throw new IOException("unsupported snapshot version");
+      }
+      int length = in.getInt();
+      int checksum = in.getInt();
+      if (length != in.remaining()) {
+        throw new IOException("snapshot length mismatch");
+      }
+      CRC32 crc = new CRC32();
+      crc.update(in.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        throw new IOException("snapshot checksum mismatch");
+      }
+
+      Snapshot s = new Snapshot();
+      s.seed = in.getInt();
+      s.chunkSize = in.getInt();
+      if (s.chunkSize <= 0 || Integer.bitCount(s.chunkSize) != 1 || s.chunkSize > World.MAX_CHUNK_SIZE) {
+        throw new IOException("bad chunk size in snapshot");
+      }
+      if (version == LEGACY_VERSION) {
+        s.generator = WorldGenerator.LEGACY.getName();
+      } else {
+        byte[] name = new byte[in.getInt()];
+        in.get(name);
+        s.generator = new String(name, StandardCharsets.UTF_8);
+        WorldGenerator.forName(s.generator);  // fail here rather than when the world is created
+      }
+      s.p = new Vector(in.getFloat(), in.getFloat());
+      s.v = new Vector(in.getFloat(), in.getFloat());
+      s.money = in.getFloat();
+      s.income = in.getFloat();
+      s.food = in.getFloat();
+
+      int upgrades = in.getInt();
+      s.factors = new float[upgrades];
+      s.prices = new float[upgrades];
+      s.timesBought = new int[upgrades];
+      for (int i = 0; i < upgrades; i++) {
+        s.factors[i] = in.getFloat();
+        s.prices[i] = in.getFloat();
+        s.timesBought[i] = in.getInt();
+      }
+
+      int count = in.getInt();
+      int chunkSize = s.chunkSize;
+      byte[] bits = new byte[(chunkSize * chunkSize + 7) / 8];
+      for (int c = 0; c < count; c++) {
+        int x = in.getInt();
+        int y = in.getInt();
+        in.get(bits);
+        // unpack the used tiles
+        Chunk chunk = new Chunk(chunkSize);
+        chunk.fromBytes(bits);
+        s.chunks.put(Convert.twoToOne(x, y), chunk);
+      }
+      return s;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("snapshot truncated", e);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("snapshot from an unknown world generator", e);
+    }
+  }
+}
@@ -0,0 +1,274 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * runs a headless ball on a long random walk across a world, far faster than the game moves, so that a few
+ * minutes go through as many chunk loads, saves, and evictions as hours of play. the ball uses the tiles it
+ * passes over and now and then looks for the nearest food, like the game does when it comes to rest
+ *
+ * every few seconds it samples the heap after a GC, open file descriptors, loaded chunks, and chunk load and
+ * save latency percentiles (from the GameEvents JFR events). after the warm up (until the chunk cache is full)
+ * the first and last thirds of the run are compared, and the test fails if any of them grew
+ *
+ * run from the command line: java SoakTest [seconds] [dir] [seed]
+ */
+public class SoakTest {
+  private static final int WIDTH = 400;            // view the chunks are loaded for: the game's, zoomed out
+  private static final int HEIGHT = 400;
+  private static final float ZOOM = 25;
+  private static final float SPEED = 3;            // tiles per step
+  private static final float TURN_CHANCE = 0.02f;  // chance per step of heading somewhere else
+  private static final int RADIUS = 20000;         // the walk turns back beyond this, so old chunks get revisited
+  private static final int SEARCH_EVERY = 2000;    // steps between food searches
+  // how much the last third may grow over the first before the test fails
+  private static final double HEAP_SLACK_MB = 16;
+  private static final double HEAP_SLACK_FACTOR = 1.25;
+  private static final int FD_SLACK = 8;
+  private static final double CHUNK_SLACK_FACTOR = 1.05;
+  private static final double LATENCY_SLACK_MS = 2;
+  private static final double LATENCY_SLACK_FACTOR = 4;
+
+  /**
+   * what was measured at one point in the run
+   */
+  private static class Sample {
+    double seconds;
+    long steps;
+    double heapMb;      // used heap right after a GC
+    long fds;           // open file descriptors, -1 if the platform can't tell
+    int chunks;         // loaded chunks
+    boolean warm;       // whether the chunk cache had filled up
+    double[] load;      // chunk load latency p50, p99, max in ms, since the previous sample
+    double[] save;      // the same for saves
+  }
+
+  /**
+   * chunk I/O latencies collected from the JFR stream between samples
+   */
+  private static class Latencies {
+    private long[] nanos = new long[1024];
+    private int count;
+
+    synchronized void add(long n) {
+      if (count == nanos.length) {
+        nanos = Arrays.copyOf(nanos, count * 2);
+      }
+      nanos[count++] = n;
+    }
+
+    /**
+     * Takes the percentiles of everything since the last call and starts over
+     *
+     * @return p50, p99, and max in ms
+     */
+    synchronized double[] drain() {
+      Arrays.sort(nanos, 0, count);
+      double[] result = {percentile(0.5), percentile(0.99), count == 0 ? 0 : nanos[count - 1] / 1e6};
+      count = 0;
+      return result;
+    }
+
+    private double percentile(double p) {
+      return count == 0 ? 0 : nanos[(int) Math.min(count - 1, Math.floor(p * count))] / 1e6;
+    }
+  }
+
+  /**
+   * Runs the walk, prints the samples, and exits with status 1 if anything grew
+   *
+   * @param args optionally how many seconds to run, the world folder (a temporary one by default), and the seed
+   * @throws Exception if the world folder or the event recording can't be set up
+   */
+  public static void main(String[] args) throws Exception {
+    int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+    boolean scratch = args.length < 2;
+    File dir = scratch ? Files.createTempDirectory("soak").toFile() : new File(args[1]);
+    dir.mkdirs();
+    int seed = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+    // about 60 samples whatever the duration, but not more than one a second
+    double interval = Math.max(1, seconds / 60.0);
+
+    // chunk I/O latencies come from the game's own events
+    Latencies loads = new Latencies();
+    Latencies saves = new Latencies();
+    RecordingStream jfr = new RecordingStream();
+    jfr.enable("bounceback.ChunkLoad").withoutThreshold();
+    jfr.enable("bounceback.ChunkSave").withoutThreshold();
+    jfr.setMaxAge(Duration.ofSeconds(10));
+    jfr.onEvent("bounceback.ChunkLoad", e -> loads.add(e.getDuration().toNanos()));
+    jfr.onEvent("bounceback.ChunkSave", e -> saves.add(e.getDuration().toNanos()));
+    jfr.startAsync();
+
+    World w = new World(seed, World.DEFAULT_CHUNK_SIZE, dir.getPath(), WorldGenerator.DEFAULT);
+    ResourceIndex resources = new ResourceIndex(w);
+    Ball ball = new Ball(null, 0.1f);
+    Random r = new Random(seed);
+    ArrayList<Sample> samples = new ArrayList<Sample>();
+
+    System.out.println("     s |     steps | heap MB | fds | chunks | load p50/p99/max ms | save p50/p99/max ms");
+    long start = System.nanoTime();
+    long nextSample = start;
+    long steps = 0;
+    double angle = 0;
+    while (true) {
+      long now = System.nanoTime();
+      if (now >= nextSample) {
+        Sample s = sample(w, steps, (now - start) / 1e9, loads, saves);
+        samples.add(s);
+        System.out.println(String.format("%6.0f | %9d | %7.1f | %3d | %6d | %6.2f %6.2f %6.1f | %6.2f %6.2f %6.1f",
+                                         s.seconds, s.steps, s.heapMb, s.fds, s.chunks, s.load[0], s.load[1],
+                                         s.load[2], s.save[0], s.save[1], s.save[2]));
+        if (now - start >= seconds * 1000000000L) {
+          break;
+        }
+        nextSample += (long) (interval * 1e9);
+      }
+
+      // a random walk that heads back towards the middle once it's too far out
+      if (r.nextFloat() < TURN_CHANCE) {
+        angle = r.nextDouble() * 2 * Math.PI;
+        if (ball.p.magnitude() > RADIUS) {
+          angle = Math.atan2(-ball.p.y, -ball.p.x) + (r.nextDouble() - 0.5);
+        }
+      }
+      ball.v = new Vector((float) Math.cos(angle) * SPEED, (float) Math.sin(angle) * SPEED);
+      ball.updatePosition();
+      w.loadChunks(ball.p.x, ball.p.y, WIDTH, HEIGHT, ZOOM);
+
+      // use whatever it passes over, so chunks get dirty and have to be saved when they're evicted
+      int x = (int) Math.floor(ball.p.x);
+      int y = (int) Math.floor(ball.p.y);
+      for (int i = x - 1; i <= x + 1; i++) {
+        for (int j = y - 1; j <= y + 1; j++) {
+          if (w.getTile(i, j) != Tile.AIR) {
+            w.updateChunk(i, j);
+          }
+        }
+      }
+      if (steps % SEARCH_EVERY == 0) {
+        resources.nearest(Tile.FOOD, ball.p.x, ball.p.y, 48);
+      }
+      steps++;
+    }
+    jfr.close();
+    System.out.println(w.getCache());
+
+    ArrayList<String> failures = check(samples);
+    if (scratch) {
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+      dir.delete();
+    }
+    if (failures.isEmpty()) {
+      System.out.println("PASS");
+    } else {
+      for (String f : failures) {
+        System.out.println("FAIL: " + f);
+      }
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Measures the current state
+   *
+   * @param w       world being walked
+   * @param steps   steps taken so far
+   * @param seconds time since the start
+   * @param loads   load latencies since the last sample
+   * @param saves   save latencies since the last sample
+   * @return the sample
+   */
+  private static Sample sample(World w, long steps, double seconds, Latencies loads, Latencies saves) {
+    Sample s = new Sample();
+    s.seconds = seconds;
+    s.steps = steps;
+    System.gc();
+    s.heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1e6;
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    s.fds = os instanceof com.sun.management.UnixOperatingSystemMXBean
+            ? ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount() : -1;
+    s.chunks = w.getLoadedChunks().size();
+    s.warm = w.getCache().getEvictions() > 0;
+    s.load = loads.drain();
+    s.save = saves.drain();
+    return s;
+  }
+
+  /**
+   * Compares the first and last thirds of the warm samples
+   *
+   * @param samples every sample, in order
+   * @return what grew too much; empty if nothing did
+   */
+  private static ArrayList<String> check(ArrayList<Sample> samples) {
+    ArrayList<String> failures = new ArrayList<String>();
+    ArrayList<Sample> warm = new ArrayList<Sample>();
+    for (int i = 1; i < samples.size(); i++) {
+      // the sample where the cache first fills is still settling
+      if (samples.get(i).warm && samples.get(i - 1).warm) {
+        warm.add(samples.get(i));
+      }
+    }
+    if (warm.size() < 6) {
+      failures.add("only " + warm.size() + " samples after the chunk cache filled up; run for longer");
+      return failures;
+    }
+    int third = warm.size() / 3;
+    Sample[] first = new Sample[third];
+    Sample[] last = new Sample[third];
+    for (int i = 0; i < third; i++) {
+      first[i] = warm.get(i);
+      last[i] = warm.get(warm.size() - third + i);
+    }
+
+    double heapBefore = 0;
+    double heapAfter = 0;
+    double fdsBefore = 0;
+    double fdsAfter = 0;
+    double chunksBefore = 0;
+    double chunksAfter = 0;
+    double loadBefore = 0;
+    double loadAfter = 0;
+    double saveBefore = 0;
+    double saveAfter = 0;
+    for (int i = 0; i < third; i++) {
+      heapBefore += first[i].heapMb / third;
+      heapAfter += last[i].heapMb / third;
+      fdsBefore += (double) first[i].fds / third;
+      fdsAfter += (double) last[i].fds / third;
+      chunksBefore += (double) first[i].chunks / third;
+      chunksAfter += (double) last[i].chunks / third;
+      // p99s, averaged so that one slow sample (a GC, another process) doesn't fail the run
+      loadBefore += first[i].load[1] / third;
+      loadAfter += last[i].load[1] / third;
+      saveBefore += first[i].save[1] / third;
+      saveAfter += last[i].save[1] / third;
+    }
+
+    if (heapAfter > heapBefore * HEAP_SLACK_FACTOR + HEAP_SLACK_MB) {
+      failures.add(String.format("heap grew from %.1f MB to %.1f MB", heapBefore, heapAfter));
+    }
+    if (fdsBefore >= 0 && fdsAfter > fdsBefore + FD_SLACK) {
+      failures.add(String.format("open files grew from %.0f to %.0f", fdsBefore, fdsAfter));
+    }
+    if (chunksAfter > chunksBefore * CHUNK_SLACK_FACTOR) {
+      failures.add(String.format("loaded chunks grew from %.0f to %.0f", chunksBefore, chunksAfter));
+    }
+    if (loadAfter > loadBefore * LATENCY_SLACK_FACTOR + LATENCY_SLACK_MS) {
+      failures.add(String.format("chunk load p99 went from %.2f ms to %.2f ms", loadBefore, loadAfter));
+    }
+    if (saveAfter > saveBefore * LATENCY_SLACK_FACTOR + LATENCY_SLACK_MS) {
+      failures.add(String.format("chunk save p99 went from %.2f ms to %.2f ms", saveBefore, saveAfter));
+    }
+    return failures;
+  }
+}
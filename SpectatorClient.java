@@ -0,0 +1,238 @@
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * the receiving end of a SpectatorFeed. rebuilds the game from the messages: the world comes from the seed with
+ * the same generator as the game (named in the keyframe), and the used tiles, ball, and stats come from the feed.
+ * chunks are dropped when the game unloads them, so the client holds no more chunks than the game does
+ */
+public class SpectatorClient implements Runnable {
+  private Socket socket;
+  private CountingStream in;  // counts the bytes received
+
+  // state rebuilt from the feed; read and written while synchronized on the client
+  private World world;        // null until the first keyframe
+  private int ballX;          // quantised ball
+  private int ballY;
+  private int ballVX;
+  private int ballVY;
+  private float money;
+  private float income;
+  private float food;
+  private long messages;      // messages received
+  private long connected = System.nanoTime();
+  private volatile boolean closed;
+
+  /**
+   * an input stream that counts what is read through it
+   */
+  private static class CountingStream extends FilterInputStream {
+    volatile long count;
+
+    CountingStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+      int n = super.read(b, offset, length);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Connects to a feed on this machine
+   *
+   * @param port port the feed listens on
+   * @throws IOException if it can't connect
+   */
+  public SpectatorClient(int port) throws IOException {
+    socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    // count what comes off the socket, before buffering
+    in = new CountingStream(socket.getInputStream());
+  }
+
+  /**
+   * Starts receiving on a new thread
+   */
+  public void start() {
+    Thread t = new Thread(this, "spectator client");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * Reads messages until the feed closes
+   */
+  public void run() {
+    InputStream s = new BufferedInputStream(in);
+    try {
+      while (true) {
+        int type = SpectatorFeed.read(s);
+        synchronized (this) {
+          apply(type, s);
+        }
+      }
+    } catch (IOException e) {
+      // the feed stopped
+    }
+    closed = true;
+  }
+
+  /**
+   * Reads one record and applies it
+   *
+   * @param type record type
+   * @param s    stream to read the record from
+   * @throws IOException if the stream ends or has an unknown record
+   */
+  private void apply(int type, InputStream s) throws IOException {
+    switch (type) {
+      case SpectatorFeed.END:
+        messages++;
+        break;
+      case SpectatorFeed.SEED:
+        // a keyframe: start over with a new world. it never loads or saves chunks, they all come from the feed
+        int seed = SpectatorFeed.readSigned(s);
+        int chunkSize = SpectatorFeed.readVarint(s);
+        char[] name = new char[SpectatorFeed.readVarint(s)];
+        for (int i = 0; i < name.length; i++) {
+          name[i] = (char) SpectatorFeed.read(s);
+        }
+        try {
+          world = new World(seed, chunkSize, null, WorldGenerator.forName(new String(name)));
+        } catch (IllegalArgumentException e) {
+          throw new IOException("the game uses a generator this version doesn't have", e);
+        }
+        ballX = ballY = ballVX = ballVY = 0;
+        money = income = food = 0;
+        break;
+      case SpectatorFeed.CHUNK: {
+        int cx = SpectatorFeed.readSigned(s);
+        int cy = SpectatorFeed.readSigned(s);
+        Chunk c = new Chunk(world.chunkSize);
+        // alternating runs of unused and used tiles
+        boolean state = false;
+        for (int n = 0; n < c.size * c.size; state = !state) {
+          int run = SpectatorFeed.readVarint(s);
+          for (int end = n + run; n < end; n++) {
+            if (state) {
+              c.set(n / c.size, n % c.size);
+            }
+          }
+        }
+        world.addChunk(cx, cy, c);
+        break;
+      }
+      case SpectatorFeed.BALL:
+        ballX += SpectatorFeed.readSigned(s);
+        ballY += SpectatorFeed.readSigned(s);
+        ballVX += SpectatorFeed.readSigned(s);
+        ballVY += SpectatorFeed.readSigned(s);
+        break;
+      case SpectatorFeed.TILE: {
+        // relative to the ball's tile, which was already updated by this message
+        int x = Math.floorDiv(ballX, SpectatorFeed.POSITION_SCALE) + SpectatorFeed.readSigned(s);
+        int y = Math.floorDiv(ballY, SpectatorFeed.POSITION_SCALE) + SpectatorFeed.readSigned(s);
+        int cx = Convert.chunkCoord(x, world.chunkShift);
+        int cy = Convert.chunkCoord(y, world.chunkShift);
+        if (world.getLoadedChunks().get(Convert.twoToOne(cx, cy)) == null) {
+          world.addChunk(cx, cy, new Chunk(world.chunkSize));
+        }
+        world.updateChunk(x, y);
+        break;
+      }
+      case SpectatorFeed.DROP:
+        // the game unloaded it; the feed sends it again if it comes back
+        world.removeChunk(SpectatorFeed.readSigned(s), SpectatorFeed.readSigned(s));
+        break;
+      case SpectatorFeed.STATS: {
+        int mask = SpectatorFeed.read(s);
+        if ((mask & 1) != 0) {
+          money = SpectatorFeed.readFloat(s);
+        }
+        if ((mask & 2) != 0) {
+          income = SpectatorFeed.readFloat(s);
+        }
+        if ((mask & 4) != 0) {
+          food = SpectatorFeed.readFloat(s);
+        }
+        break;
+      }
+      default:
+        throw new IOException("unknown record " + type);
+    }
+  }
+
+  /**
+   * Fills a frame with what the spectator sees
+   *
+   * @param f      frame to fill
+   * @param width  screen width
+   * @param height screen height
+   * @param zoom   pixels per tile
+   * @return false if nothing has been received yet
+   */
+  public synchronized boolean fill(Frame f, int width, int height, float zoom) {
+    if (world == null) {
+      return false;
+    }
+    f.seed = world.seed;
+    f.p.x = (float) ballX / SpectatorFeed.POSITION_SCALE;
+    f.p.y = (float) ballY / SpectatorFeed.POSITION_SCALE;
+    f.v.x = (float) ballVX / SpectatorFeed.VELOCITY_SCALE;
+    f.v.y = (float) ballVY / SpectatorFeed.VELOCITY_SCALE;
+    f.money = money;
+    f.income = income;
+    f.food = food;
+    f.view(world, width, height, zoom);
+    return true;
+  }
+
+  /**
+   * Checks if the feed has stopped
+   *
+   * @return whether the connection is closed
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Closes the connection
+   */
+  public void close() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      System.out.println(e);
+    }
+  }
+
+  /**
+   * Describes how much has been received
+   *
+   * @return metrics as text
+   */
+  @Override
+  public synchronized String toString() {
+    double seconds = (System.nanoTime() - connected) / 1e9;
+    return String.format("%d messages, %d bytes, %.0f bytes/s", messages, in.count, in.count / seconds);
+  }
+}
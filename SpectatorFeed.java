@@ -0,0 +1,501 @@
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * streams the game to spectators over a local socket, so that another process can watch without simulating.
+ * a spectator first gets a keyframe: the seed, the used tiles of the loaded chunks, the ball, and the stats.
+ * after that every tick only sends what changed: the ball as quantised varint deltas, tiles that got used,
+ * chunks that were loaded or unloaded, and stats that changed. ticks where nothing changed send nothing. a
+ * spectator only keeps the chunks the game has loaded, so its memory is bounded by the game's chunk budget
+ *
+ * each tick is encoded once on the simulation thread and the same bytes are queued for every spectator; each
+ * spectator has its own thread writing to its socket, so a slow one never holds up the game or the others
+ *
+ * message format: records of a type byte and its fields, ending with END. ints are varints, signed ones
+ * zigzag encoded, and stats are raw float bits
+ *   SEED  seed, chunk size, generator    (resets the world; only in keyframes. the generator is its name's
+ *                                        length and ASCII characters)
+ *   CHUNK x, y, run lengths              (alternating unused and used runs, in chunk file order)
+ *   BALL  dx, dy, dvx, dvy               (change in the quantised position and velocity)
+ *   TILE  dx, dy                         (a used tile, relative to the ball's tile)
+ *   STATS mask, changed stats            (bits 1, 2, 4 for money, income, food)
+ *   DROP  x, y                           (a chunk the game unloaded; it comes again as CHUNK if it's loaded)
+ */
+public class SpectatorFeed implements WorldListener {
+  public static final int PORT = 4343;               // port the feed listens on, on the loopback address only
+  public static final int POSITION_SCALE = 1024;     // ball positions are sent in 1/1024ths of a tile
+  public static final int VELOCITY_SCALE = 65536;    // ball velocities in 1/65536ths of a tile per tick
+  // record types
+  public static final int END = 0;
+  public static final int SEED = 1;
+  public static final int CHUNK = 2;
+  public static final int BALL = 3;
+  public static final int TILE = 4;
+  public static final int STATS = 5;
+  public static final int DROP = 6;
+  private static final int QUEUE_SIZE = 600;         // messages a spectator can fall behind (10 seconds) before it's dropped
+  // an empty message is sent after this long without one, so that a spectator that left is noticed while idle
+  private static final long KEEPALIVE_MILLIS = 1000;
+  private static final byte[] KEEPALIVE = {END};
+
+  private ServerSocket server;
+  private ConcurrentLinkedQueue<Connection> joining = new ConcurrentLinkedQueue<Connection>();  // waiting for a keyframe
+  private ArrayList<Connection> spectators = new ArrayList<Connection>();  // up to date, getting deltas
+
+  // what the spectators know, only touched by the simulation thread
+  private World world;                                         // world being streamed
+  private HashSet<Integer> sent = new HashSet<Integer>();      // chunks the spectators have
+  private long cacheChanges = -1;                              // chunk cache changes when sent was last updated
+  private ArrayList<Integer> used = new ArrayList<Integer>();  // tiles used this tick, as x, y pairs
+  private int ballX;                                           // quantised ball last sent
+  private int ballY;
+  private int ballVX;
+  private int ballVY;
+  private float money;                                         // stats last sent
+  private float income;
+  private float food;
+  private ByteArrayOutputStream out = new ByteArrayOutputStream();  // message being encoded
+
+  // metrics
+  private volatile long encodeNanos;  // time spent encoding, not counting handing messages to the spectators
+  private volatile long ticks;        // ticks encoded
+  private volatile long messages;     // messages sent (not counting empty ticks)
+  private volatile long bytes;        // bytes encoded, each message counted once
+
+  /**
+   * a spectator's socket and the messages waiting to be written to it
+   */
+  private static class Connection implements Runnable {
+    Socket socket;
+    Thread writer;            // thread running run, interrupted by close
+    BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+    volatile boolean closed;
+    volatile long bytesSent;
+    long connected = System.nanoTime();
+
+    /**
+     * Queues a message, dropping the spectator if it has fallen too far behind
+     *
+     * @param message encoded message, shared with the other spectators
+     */
+    void send(byte[] message) {
+      if (!queue.offer(message)) {
+        close();
+      }
+    }
+
+    /**
+     * Writes queued messages until the socket closes. Writes an empty message when there's nothing to send for
+     * a while, since only a failed write shows that the spectator is gone
+     */
+    public void run() {
+      try {
+        OutputStream o = socket.getOutputStream();
+        while (!closed) {
+          byte[] message = queue.poll(KEEPALIVE_MILLIS, TimeUnit.MILLISECONDS);
+          if (message == null) {
+            message = KEEPALIVE;
+          }
+          o.write(message);
+          bytesSent += message.length;
+        }
+      } catch (IOException | InterruptedException e) {
+        // the spectator left
+      }
+      close();
+    }
+
+    /**
+     * Closes the socket and stops the writer thread, whether it's writing or waiting for a message
+     */
+    void close() {
+      closed = true;
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // already closed
+      }
+      if (writer != null && writer != Thread.currentThread()) {
+        writer.interrupt();
+      }
+    }
+  }
+
+  /**
+   * Starts listening for spectators
+   *
+   * @param port port to listen on
+   * @throws IOException if the port can't be opened
+   */
+  public SpectatorFeed(int port) throws IOException {
+    server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(() -> {
+      try {
+        while (true) {
+          Connection c = new Connection();
+          c.socket = server.accept();
+          c.socket.setTcpNoDelay(true);
+          c.writer = new Thread(c, "spectator " + c.socket.getPort());
+          c.writer.setDaemon(true);
+          c.writer.start();
+          joining.add(c);
+        }
+      } catch (IOException e) {
+        // the server socket was closed
+      }
+    }, "spectator feed");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Stops listening and disconnects every spectator
+   */
+  public void close() {
+    try {
+      server.close();
+    } catch (IOException e) {
+      System.out.println(e);
+    }
+    for (Connection c : spectators) {
+      c.close();
+    }
+    for (Connection c : joining) {
+      c.close();
+    }
+    if (world != null) {
+      world.removeListener(this);
+    }
+  }
+
+  /**
+   * Remembers a used tile for the next tick's message
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   */
+  public void tileUsed(int x, int y) {
+    used.add(x);
+    used.add(y);
+  }
+
+  /**
+   * Sends what changed this tick to the spectators, and a keyframe to those who just joined.
+   * Called by the simulation thread at the end of every tick
+   *
+   * @param w      world
+   * @param p      ball position
+   * @param v      ball velocity
+   * @param money  player money
+   * @param income player income
+   * @param food   player food
+   */
+  public void tick(World w, Vector p, Vector v, float money, float income, float food) {
+    ArrayList<Connection> keyframed = new ArrayList<Connection>();
+    if (w != world) {
+      // a new game; everyone starts over from a keyframe
+      if (world != null) {
+        world.removeListener(this);
+      }
+      world = w;
+      world.addListener(this);
+      keyframed.addAll(spectators);
+      spectators.clear();
+    }
+    for (Connection c = joining.poll(); c != null; c = joining.poll()) {
+      keyframed.add(c);
+    }
+
+    if (!spectators.isEmpty()) {
+      byte[] delta = encode(p, v, money, income, food, false);
+      if (delta != null) {
+        for (Connection c : spectators) {
+          c.send(delta);
+        }
+      }
+    }
+    used.clear();
+    if (!keyframed.isEmpty()) {
+      byte[] keyframe = encode(p, v, money, income, food, true);
+      for (Connection c : keyframed) {
+        c.send(keyframe);
+      }
+      spectators.addAll(keyframed);
+    }
+
+    // forget spectators that left or fell behind
+    for (Iterator<Connection> it = spectators.iterator(); it.hasNext(); ) {
+      if (it.next().closed) {
+        it.remove();
+      }
+    }
+    ticks++;
+  }
+
+  /**
+   * Encodes a message. Either way, what was sent is remembered for the next delta
+   *
+   * @param p        ball position
+   * @param v        ball velocity
+   * @param money    player money
+   * @param income   player income
+   * @param food     player food
+   * @param keyframe whether to send everything instead of what changed
+   * @return the message, or null if nothing changed
+   */
+  private byte[] encode(Vector p, Vector v, float money, float income, float food, boolean keyframe) {
+    long start = System.nanoTime();
+    out.reset();
+    if (keyframe) {
+      out.write(SEED);
+      writeSigned(out, world.seed);
+      writeVarint(out, world.chunkSize);
+      String name = world.generator.getName();
+      writeVarint(out, name.length());
+      for (int i = 0; i < name.length(); i++) {
+        out.write(name.charAt(i));
+      }
+      // the spectator knows nothing yet, so everything is sent as a change from zero
+      sent.clear();
+      ballX = ballY = ballVX = ballVY = 0;
+      this.money = this.income = this.food = 0;
+    }
+
+    // chunks loaded and unloaded since the last message; ones that left the cache are sent again if they come
+    // back. most ticks load nothing, which the cache's change count shows without going through the chunks
+    if (keyframe || world.getCache().getChanges() != cacheChanges) {
+      cacheChanges = world.getCache().getChanges();
+      HashMap<Integer, Chunk> loaded = world.getLoadedChunks();
+      for (Iterator<Integer> it = sent.iterator(); it.hasNext(); ) {
+        int key = it.next();
+        if (!loaded.containsKey(key)) {
+          out.write(DROP);
+          writeSigned(out, Convert.oneToFirst(key));
+          writeSigned(out, Convert.oneToSecond(key));
+          it.remove();
+        }
+      }
+      for (int key : loaded.keySet()) {
+        if (sent.add(key)) {
+          writeChunk(Convert.oneToFirst(key), Convert.oneToSecond(key), loaded.get(key));
+        }
+      }
+    }
+
+    int x = Math.round(p.x * POSITION_SCALE);
+    int y = Math.round(p.y * POSITION_SCALE);
+    int vx = Math.round(v.x * VELOCITY_SCALE);
+    int vy = Math.round(v.y * VELOCITY_SCALE);
+    if (keyframe || x != ballX || y != ballY || vx != ballVX || vy != ballVY) {
+      out.write(BALL);
+      writeSigned(out, x - ballX);
+      writeSigned(out, y - ballY);
+      writeSigned(out, vx - ballVX);
+      writeSigned(out, vy - ballVY);
+      ballX = x;
+      ballY = y;
+      ballVX = vx;
+      ballVY = vy;
+    }
+
+    if (!keyframe) {
+      // used tiles are always next to the ball, so they are sent relative to it
+      int tileX = Math.floorDiv(ballX, POSITION_SCALE);
+      int tileY = Math.floorDiv(ballY, POSITION_SCALE);
+      for (int i = 0; i < used.size(); i += 2) {
+        out.write(TILE);
+        writeSigned(out, used.get(i) - tileX);
+        writeSigned(out, used.get(i + 1) - tileY);
+      }
+    }
+
+    int mask = keyframe ? 7 : (money != this.money ? 1 : 0) | (income != this.income ? 2 : 0)
+                              | (food != this.food ? 4 : 0);
+    if (mask != 0) {
+      out.write(STATS);
+      out.write(mask);
+      if ((mask & 1) != 0) {
+        writeFloat(out, money);
+      }
+      if ((mask & 2) != 0) {
+        writeFloat(out, income);
+      }
+      if ((mask & 4) != 0) {
+        writeFloat(out, food);
+      }
+      this.money = money;
+      this.income = income;
+      this.food = food;
+    }
+
+    if (out.size() == 0) {
+      encodeNanos += System.nanoTime() - start;
+      return null;
+    }
+    out.write(END);
+    byte[] message = out.toByteArray();
+    messages++;
+    bytes += message.length;
+    encodeNanos += System.nanoTime() - start;
+    return message;
+  }
+
+  /**
+   * Encodes a chunk as runs of unused and used tiles, which are long in almost every chunk
+   *
+   * @param cx chunk x coordinate
+   * @param cy chunk y coordinate
+   * @param c  the chunk
+   */
+  private void writeChunk(int cx, int cy, Chunk c) {
+    out.write(CHUNK);
+    writeSigned(out, cx);
+    writeSigned(out, cy);
+    if (!c.any()) {
+      // most chunks: one run of unused tiles
+      writeVarint(out, c.size * c.size);
+      return;
+    }
+    boolean state = false;
+    int run = 0;
+    for (int i = 0; i < c.size; i++) {
+      for (int j = 0; j < c.size; j++) {
+        if (c.get(i, j) != state) {
+          writeVarint(out, run);
+          state = !state;
+          run = 0;
+        }
+        run++;
+      }
+    }
+    writeVarint(out, run);
+  }
+
+  /**
+   * Writes an unsigned varint: 7 bits per byte, with the top bit set on every byte but the last
+   *
+   * @param out stream to write to
+   * @param n   the int, treated as unsigned
+   */
+  public static void writeVarint(ByteArrayOutputStream out, int n) {
+    while ((n & ~0x7F) != 0) {
+      out.write((n & 0x7F) | 0x80);
+      n >>>= 7;
+    }
+    out.write(n);
+  }
+
+  /**
+   * Writes a signed varint, zigzag encoded so that small negative numbers stay small
+   *
+   * @param out stream to write to
+   * @param n   the int
+   */
+  public static void writeSigned(ByteArrayOutputStream out, int n) {
+    writeVarint(out, (n << 1) ^ (n >> 31));
+  }
+
+  /**
+   * Writes the bits of a float, big endian
+   *
+   * @param out stream to write to
+   * @param f   the float
+   */
+  public static void writeFloat(ByteArrayOutputStream out, float f) {
+    int n = Float.floatToIntBits(f);
+    out.write(n >>> 24);
+    out.write(n >>> 16);
+    out.write(n >>> 8);
+    out.write(n);
+  }
+
+  /**
+   * Reads an unsigned varint
+   *
+   * @param in stream to read from
+   * @return the int
+   * @throws IOException if the stream ends or fails
+   */
+  public static int readVarint(InputStream in) throws IOException {
+    int n = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = read(in);
+      n |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return n;
+      }
+    }
+  }
+
+  /**
+   * Reads a zigzag encoded signed varint
+   *
+   * @param in stream to read from
+   * @return the int
+   * @throws IOException if the stream ends or fails
+   */
+  public static int readSigned(InputStream in) throws IOException {
+    int n = readVarint(in);
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  /**
+   * Reads the bits of a float, big endian
+   *
+   * @param in stream to read from
+   * @return the float
+   * @throws IOException if the stream ends or fails
+   */
+  public static float readFloat(InputStream in) throws IOException {
+    return Float.intBitsToFloat(read(in) << 24 | read(in) << 16 | read(in) << 8 | read(in));
+  }
+
+  /**
+   * Reads one byte
+   *
+   * @param in stream to read from
+   * @return the byte, from 0 to 255
+   * @throws IOException if the stream ends or fails
+   */
+  public static int read(InputStream in) throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException("feed closed");
+    }
+    return b;
+  }
+
+  /**
+   * Describes how much the feed sends and what encoding costs
+   *
+   * @return metrics as text
+   */
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder();
+    s.append(String.format("feed on port %d: %d spectators, %d messages, %.1f bytes/message, %.1f us/tick encoding",
+                           server.getLocalPort(), spectators.size(), messages,
+                           messages == 0 ? 0.0 : (double) bytes / messages,
+                           ticks == 0 ? 0.0 : encodeNanos / 1000.0 / ticks));
+    for (Connection c : new ArrayList<Connection>(spectators)) {
+      double seconds = (System.nanoTime() - c.connected) / 1e9;
+      s.append(String.format("\n  spectator %d: %d bytes, %.0f bytes/s", c.socket.getPort(), c.bytesSent,
+                             c.bytesSent / seconds));
+    }
+    return s.toString();
+  }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import processing.core.PApplet;
+
+/**
+ * watches a game that is streaming its spectator feed (press f in the game) from another process. nothing is
+ * simulated here; the view is rebuilt from the seed and the changes the feed sends
+ *
+ * z switches the zoom, i prints how much the feed has sent
+ */
+public class SpectatorViewer extends PApplet {
+  private SpectatorClient client;     // connection to the game
+  private Frame frame = new Frame();  // what is drawn, filled from the client every frame
+  private WorldRenderer worldRenderer;
+  private StatsPanel stats;
+  private Ball shown = new Ball(this, 0.1f);  // ball as received
+  private float zoom = 128;           // pixels per tile
+  private final int width = 400;      // dimensions of screen, the same as the game's
+  private final int height = 400;
+
+  /**
+   * Called at the beginning of the program before the window opens
+   */
+  public void settings() {
+    size(width, height);
+  }
+
+  /**
+   * Loads the images and connects to the game
+   */
+  public void setup() {
+    Assets.load(this);
+    worldRenderer = new WorldRenderer(this);
+    stats = new StatsPanel(this, width);
+    try {
+      client = new SpectatorClient(SpectatorFeed.PORT);
+      client.start();
+    } catch (IOException e) {
+      println("can't connect to the game on port " + SpectatorFeed.PORT + ": " + e);
+    }
+  }
+
+  /**
+   * Draws the latest state received from the game
+   */
+  public void draw() {
+    background(0, 0, 0);
+    if (client == null || !client.fill(frame, width, height, zoom)) {
+      fill(255);
+      text(client == null ? "Not connected" : "Waiting for the game...", 10, 20);
+      return;
+    }
+    worldRenderer.draw(frame, width, height);
+    shown.p = frame.p;
+    shown.v = frame.v;
+    shown.draw(width, height, zoom);
+    stats.draw(frame.money, frame.income, frame.food);
+    if (client.isClosed()) {
+      fill(255);
+      text("The game stopped streaming", 10, height - 10);
+    }
+  }
+
+  /**
+   * Called when a key is pressed on the keyboard
+   */
+  public void keyPressed() {
+    if (key == 'z') {
+      zoom = zoom == 25 ? 128 : 25;
+    }
+    if (key == 'i' && client != null) {
+      println(client);
+    }
+  }
+
+  /**
+   * Opens the viewer window, which connects to a game on this machine
+   *
+   * @param args arguments passed on to Processing
+   */
+  public static void main(String[] args) {
+    PApplet.main("SpectatorViewer", args);
+  }
+}
@@ -0,0 +1,63 @@
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * represents a rectangular region of the texture atlas that can be drawn like a regular image
+ */
+public class Sprite {
+  public PImage atlas;  // image that the sprite is a part of
+  public int u;         // top left corner of the region in the atlas
+  public int v;
+  public int width;     // size of the region in pixels
+  public int height;
+
+  /**
+   * Constructs a new Sprite object
+   *
+   * @param atlas  the atlas image containing the sprite
+   * @param u      left coordinate of the region
+   * @param v      top coordinate of the region
+   * @param width  width of the region
+   * @param height height of the region
+   */
+  public Sprite(PImage atlas, int u, int v, int width, int height) {
+    this.atlas = atlas; this.u = u; this.v = v; this.width = width; this.height = height;
+  }
+
+  /**
+   * Draws the sprite at its original size
+   *
+   * @param app PApplet instance to draw with
+   * @param x   left coordinate on the screen
+   * @param y   top coordinate on the screen
+   */
+  public void draw(PApplet app, float x, float y) {
+    draw(app, x, y, width, height);
+  }
+
+  /**
+   * Draws the sprite scaled to the specified size
+   *
+   * @param app PApplet instance to draw with
+   * @param x   left coordinate on the screen
+   * @param y   top coordinate on the screen
+   * @param w   width on the screen
+   * @param h   height on the screen
+   */
+  public void draw(PApplet app, float x, float y, float w, float h) {
+    // only the sprite's region of the atlas is copied to the screen
+    app.image(atlas, x, y, w, h, u, v, u + width, v + height);
+  }
+
+  /**
+   * Draws the sprite at its original size onto an offscreen layer
+   *
+   * @param g layer to draw onto
+   * @param x left coordinate on the layer
+   * @param y top coordinate on the layer
+   */
+  public void draw(PGraphics g, float x, float y) {
+    g.image(atlas, x, y, width, height, u, v, u + width, v + height);
+  }
+}
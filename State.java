@@ -0,0 +1,11 @@
+/**
+ * represents which menu page the game is on
+ */
+public enum State {
+  PLAY,     // no menus open
+  UPGRADES, // upgrade shop
+  CONFIRM,  // confirm starting a new game
+  ABOUT,    // about page
+  WIN,      // win page
+  LOSE      // lose page
+}
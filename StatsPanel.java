@@ -0,0 +1,49 @@
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+/**
+ * draws the player stats from a cached layer. the text is only formatted and laid out again when
+ * one of the stats has changed, so frames where nothing happens just copy the layer to the screen
+ */
+public class StatsPanel {
+  private PApplet app;        // PApplet to draw with
+  private PGraphics layer;    // cached rendering of the stats
+  private float money = Float.NaN;  // stats the layer was last drawn with; NaN so the first draw always renders
+  private float income = Float.NaN;
+  private float food = Float.NaN;
+
+  /**
+   * Constructs a new StatsPanel
+   *
+   * @param app   PApplet instance
+   * @param width width of the panel
+   */
+  public StatsPanel(PApplet app, int width) {
+    this.app = app;
+    layer = app.createGraphics(width, 70);
+  }
+
+  /**
+   * Draws the stats, re-rendering the layer first if any of them changed
+   *
+   * @param money  player money
+   * @param income player income
+   * @param food   player food points
+   */
+  public void draw(float money, float income, float food) {
+    if (money != this.money || income != this.income || food != this.food) {
+      this.money = money;
+      this.income = income;
+      this.food = food;
+      layer.beginDraw();
+      layer.clear();
+      // set text size and colour
+      layer.fill(255);
+      layer.textSize(15);
+      // use format string to draw 3 lines of text
+      layer.text(String.format("Money: $%.2f\nIncome: $%.2f\nFood: %.2f", money, income, food), 5, 20);
+      layer.endDraw();
+    }
+    app.image(layer, 0, 0);
+  }
+}
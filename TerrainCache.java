@@ -0,0 +1,159 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * generated tiles of whole chunks, shared by every World in the process. generation only depends on the
+ * generator, seed, and chunk, so worlds of the same seed (a reloaded save, a new game on a seed that was played
+ * before, anything that looks at the same world) reuse each other's work. the arrays are read-only; each World
+ * still keeps its own used tiles in its chunks
+ *
+ * the table is a fixed number of small sets of slots without any locks. reads are plain volatile loads. a miss
+ * generates the chunk and CASes it into a free slot of its set, or over a random one when the set is full. two
+ * threads missing on the same chunk may both generate it, but only one copy ends up shared
+ *
+ * chunks can be anything from 8x8 to 128x128, so the cache is bounded by bytes rather than by chunks: a free
+ * slot is only taken while the chunk fits in the budget, and otherwise the chunk only replaces a slot that frees
+ * enough room, or isn't cached. there are enough slots for the budget in 16x16 chunks. threads missing at the
+ * same time can each go over the budget by one chunk before they see each other's
+ */
+public class TerrainCache {
+  // used by every World; 4 MB, which is about 3800 32x32 chunks or 250 128x128 ones
+  public static final TerrainCache SHARED = new TerrainCache(4L << 20);
+  private static final int WAYS = 4;              // slots a chunk can be in
+  private static final int SMALLEST = 16 * 16;    // tiles of the smallest chunks the slots are counted for
+  private static final int ENTRY_BYTES = 64;      // an entry and its array's header, on top of the tiles
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final int sets;               // number of sets, a power of two
+  private final long budget;            // bytes of cached chunks
+  private final AtomicLong resident = new AtomicLong();  // bytes of the chunks in the slots
+
+  // metrics; adders so that threads reading at the same time don't contend on one counter
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * the tiles of one chunk. never changes once made, so it can be handed to any thread
+   */
+  private static final class Entry {
+    final WorldGenerator generator;
+    final int seed;
+    final int chunkSize;
+    final int cx;
+    final int cy;
+    final byte[] tiles;   // Tile ordinals, tile (i, j) at i * chunkSize + j
+    final long bytes;     // what the entry counts for in the budget
+
+    Entry(WorldGenerator generator, int seed, int chunkSize, int cx, int cy, byte[] tiles) {
+      this.generator = generator;
+      this.seed = seed;
+      this.chunkSize = chunkSize;
+      this.cx = cx;
+      this.cy = cy;
+      this.tiles = tiles;
+      bytes = tiles.length + ENTRY_BYTES;
+    }
+
+    boolean is(WorldGenerator generator, int seed, int chunkSize, int cx, int cy) {
+      return this.cx == cx && this.cy == cy && this.seed == seed && this.chunkSize == chunkSize
+             && this.generator == generator;
+    }
+  }
+
+  /**
+   * Constructs an empty cache
+   *
+   * @param budget bytes of chunks kept
+   */
+  public TerrainCache(long budget) {
+    this.budget = budget;
+    int capacity = (int) Math.min(budget / (SMALLEST + ENTRY_BYTES), 1 << 24);
+    sets = Integer.highestOneBit(Math.max(capacity / WAYS - 1, 1)) << 1;
+    slots = new AtomicReferenceArray<Entry>(sets * WAYS);
+  }
+
+  /**
+   * Gets the generated tiles of a chunk, generating them if they aren't cached
+   *
+   * @param generator generator of the world
+   * @param seed      seed of the world
+   * @param chunkSize width and height of the chunk
+   * @param cx        chunk x coordinate
+   * @param cy        chunk y coordinate
+   * @return Tile ordinals with tile (i, j) at i * chunkSize + j, safe area included. shared, so never change it
+   */
+  public byte[] get(WorldGenerator generator, int seed, int chunkSize, int cx, int cy) {
+    int first = set(generator, seed, chunkSize, cx, cy) * WAYS;
+    for (int w = 0; w < WAYS; w++) {
+      Entry e = slots.get(first + w);
+      if (e != null && e.is(generator, seed, chunkSize, cx, cy)) {
+        hits.increment();
+        return e.tiles;
+      }
+    }
+    misses.increment();
+
+    byte[] tiles = new byte[chunkSize * chunkSize];
+    for (int i = 0, n = 0; i < chunkSize; i++) {
+      for (int j = 0; j < chunkSize; j++, n++) {
+        tiles[n] = (byte) World.generate(generator, seed, cx * chunkSize + i, cy * chunkSize + j).ordinal();
+      }
+    }
+    Entry mine = new Entry(generator, seed, chunkSize, cx, cy, tiles);
+
+    // take a free slot while the chunk fits in the budget, unless another thread got the chunk in first
+    for (int w = 0; w < WAYS; w++) {
+      Entry e = slots.get(first + w);
+      if (e == null) {
+        if (resident.get() + mine.bytes <= budget && slots.compareAndSet(first + w, null, mine)) {
+          resident.addAndGet(mine.bytes);
+          return tiles;
+        }
+        e = slots.get(first + w);
+      }
+      if (e != null && e.is(generator, seed, chunkSize, cx, cy)) {
+        return e.tiles;
+      }
+    }
+    // the set is full, or the budget is: replace a random slot if that leaves the cache within its budget. if
+    // it doesn't, or another thread changes the slot first, just don't cache this one
+    int victim = first + ThreadLocalRandom.current().nextInt(WAYS);
+    Entry old = slots.get(victim);
+    if (old != null && resident.get() + mine.bytes - old.bytes <= budget
+        && slots.compareAndSet(victim, old, mine)) {
+      resident.addAndGet(mine.bytes - old.bytes);
+      evictions.increment();
+    }
+    return tiles;
+  }
+
+  /**
+   * Picks the set a chunk goes in
+   *
+   * @return set index
+   */
+  private int set(WorldGenerator generator, int seed, int chunkSize, int cx, int cy) {
+    long h = ((long) cx << 32 | (cy & 0xFFFFFFFFL)) + (seed * 31L + chunkSize) * 0x9E3779B97F4A7C15L
+             + generator.hashCode();
+    // SplitMix64 finaliser, so that every coordinate bit reaches the low bits used for the index
+    h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+    h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+    return (int) (h ^ (h >>> 31)) & (sets - 1);
+  }
+
+  /**
+   * Describes the cache metrics
+   *
+   * @return size, hit rate and evictions
+   */
+  public String toString() {
+    long h = hits.sum();
+    long m = misses.sum();
+    return String.format("terrain: %d of %d KB, %d chunk slots, hit rate %.2f%%, %d misses, %d evictions",
+                         resident.get() / 1024, budget / 1024, sets * WAYS, h + m == 0 ? 100.0 : 100.0 * h / (h + m),
+                         m, evictions.sum());
+  }
+}
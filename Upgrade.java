@@ -45,4 +45,24 @@ public class Upgrade {
     //return original amount of money if the upgrade can't be bought, and do nothing
     return money;
   }
+
+  /**
+   * Copies the upgrade, for trying out purchases without changing it
+   *
+   * @return a new Upgrade in the same state
+   */
+  public Upgrade copy() {
+    return new Upgrade(factor, price, priceIncrease, factorChange, timesBought, timesMax);
+  }
+
+  /**
+   * Restores the upgrade to a previously saved state without going through buy
+   *
+   * @param factor      The saved factor of the upgrade
+   * @param price       The saved price of the upgrade
+   * @param timesBought The saved number of times the upgrade has been bought
+   */
+  public void restore(float factor, float price, int timesBought) {
+    this.factor = factor; this.price = price; this.timesBought = timesBought;
+  }
 }
\ No newline at end of file
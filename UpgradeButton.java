@@ -1,5 +1,5 @@
 import processing.core.PApplet;
-import processing.core.PImage;
+import processing.core.PGraphics;
 
 /**
  * represents a button that is associated with an upgrade and adds additional
@@ -12,6 +12,9 @@ public class UpgradeButton extends Button {
   private int factX;         // coordinates to display factor data relative to button top left
   private int factY;
   private float textSize;
+  private PGraphics layer;   // cached rendering of the button with its text
+  private float drawnFactor; // factor and price the layer was last drawn with
+  private float drawnPrice;
 
   /**
    * Constructs a new UpgradeButton object
@@ -29,22 +32,34 @@ public class UpgradeButton extends Button {
    * @param fy     Y-coordinate to print factor data
    * @param s      size of the text
    */
-  public UpgradeButton(int l, int t, int w, int h, PImage i, PApplet a, Upgrade u, int cx, int cy, int fx, int fy, float s) {
+  public UpgradeButton(int l, int t, int w, int h, Sprite i, PApplet a, Upgrade u, int cx, int cy, int fx, int fy, float s) {
     super(l, t, w, h, i, a, "upgrade");
     upgrade = u; costX = cx; costY = cy; factX = fx; factY = fy; textSize = s;
   }
 
   /**
    * Overrides the draw method of the Button class
-   * Draws the button and displays the upgrade's factor and price
+   * Draws the button and displays the upgrade's factor and price. The button is rendered into a
+   * cached layer, which is only redrawn after the upgrade changes
    */
   @Override
   public void draw() {
-    //draw image
-    super.draw();
-    app.textSize(textSize);
-    app.fill(255);
-    app.text(String.format("%.2f", upgrade.factor), factX + left, factY + top);   // display factor at specified coordinates
-    app.text(String.format("$%.2f", upgrade.price), costX + left, costY + top);     // display price at specified coordinates
+    if (layer == null || upgrade.factor != drawnFactor || upgrade.price != drawnPrice) {
+      if (layer == null) {
+        layer = app.createGraphics(width, height);
+      }
+      drawnFactor = upgrade.factor;
+      drawnPrice = upgrade.price;
+      layer.beginDraw();
+      layer.clear();
+      //draw image
+      img.draw(layer, 0, 0);
+      layer.textSize(textSize);
+      layer.fill(255);
+      layer.text(String.format("%.2f", upgrade.factor), factX, factY);   // display factor at specified coordinates
+      layer.text(String.format("$%.2f", upgrade.price), costX, costY);   // display price at specified coordinates
+      layer.endDraw();
+    }
+    app.image(layer, left, top);
   }
 }
\ No newline at end of file
@@ -0,0 +1,335 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * works out which upgrades to buy, and in which order, to reach the income needed to win in as few launches
+ * as possible. the game is modelled with expected values: every launch pays the income and uses up food by the
+ * chance of the first upgrade, then hits HITS_PER_LAUNCH fresh tiles whose types follow World's proportions
+ *
+ * upgrades are only bought once RESERVE food and money is left over afterwards. buying the moment something can
+ * be afforded leaves nothing for food, and then every plan from a new game starves before it wins
+ *
+ * the plan is a dynamic program over how many times each upgrade has been bought. every combination of further
+ * purchases is a state, remembered with the fewest launches it takes to get there and the stats at that point.
+ * states are filled in order of purchases, so each one is final before it is built on. only the best way into
+ * each state is kept, which makes the plan near optimal rather than exact
+ *
+ * cheap upgrades keep paying off, so a fixed number of purchases ahead always ended up being the whole plan
+ * (24 purchases ahead planned 58 launches from a new game where 34 are possible). instead the plan goes on
+ * until STALE_PURCHASES more purchases in a row haven't made any winning plan faster. from a new game that
+ * stops around 40 purchases, within a launch of searching every purchase, and takes 100 to 200 ms, which is
+ * why the simulation plans on its own thread
+ */
+public class UpgradePlanner {
+  // fresh tiles hit per launch in a new game, measured by aiming every launch at the nearest money, income or
+  // food tile (food when it's low) over the first 60 launches of 40 games. about 5 on the first launch, falling
+  // to about 2 as the tiles around the start get used up
+  public static final float HITS_PER_LAUNCH = 2.0f;
+  // purchases ahead without a faster plan after which the plan stops looking
+  private static final int STALE_PURCHASES = 6;
+  private static final int MAX_LAUNCHES = 2000;      // launches after which a plan counts as never finishing
+  // food and money (which buys food) left after a purchase, so that buying doesn't starve the next launches
+  private static final float RESERVE = 3;
+
+  private float[][] factors;  // factor of each upgrade after n purchases
+  private float[][] prices;   // price of each upgrade after n purchases; the last one is 0 (sold out)
+  // chance of a hit being each type of tile
+  private float badHits;
+  private float moneyHits;
+  private float incomeHits;
+  private float foodHits;
+  // what one launch does for each level of the bad tile upgrade, for the hits per launch of the current plan
+  private float plannedHits = Float.NaN;
+  private float[] scales;     // share of every stat kept after the bad tiles
+  private float[] gains;      // expected number of hits, counting each one by how much of it is kept
+
+  /**
+   * the best plan from some stats
+   */
+  public static class Plan {
+    // both filled in by plan and never changed after, so a plan can be handed to another thread
+    public int[] order;    // upgrades to buy, in order (indices into the upgrades)
+    public int launches;   // expected launches until winning, or -1 if no plan wins
+  }
+
+  /**
+   * a state of the dynamic program: how it was reached and the expected stats there
+   */
+  private static class Label {
+    int launches;   // launches taken to get here
+    float money;    // stats after the last purchase
+    float income;
+    float food;
+    int parent;     // state before the last purchase, or -1 for the start
+    int bought;     // upgrade bought to get here from the parent
+  }
+
+  /**
+   * Constructs a planner for a set of upgrades
+   *
+   * @param upgrades the upgrades as they are at the start of a game; they are copied, not changed
+   */
+  public UpgradePlanner(Upgrade[] upgrades) {
+    factors = new float[upgrades.length][];
+    prices = new float[upgrades.length][];
+    for (int k = 0; k < upgrades.length; k++) {
+      // buy a copy until it sells out, the same way loading a text save replays purchases
+      ArrayList<Float> f = new ArrayList<Float>();
+      ArrayList<Float> p = new ArrayList<Float>();
+      Upgrade u = upgrades[k].copy();
+      while (true) {
+        f.add(u.factor);
+        p.add(u.price);
+        int before = u.timesBought;
+        u.buy(Float.MAX_VALUE);
+        if (u.timesBought == before) {
+          break;
+        }
+      }
+      factors[k] = new float[f.size()];
+      prices[k] = new float[p.size()];
+      for (int n = 0; n < f.size(); n++) {
+        factors[k][n] = f.get(n);
+        prices[k][n] = p.get(n);
+      }
+    }
+
+    // a launch only ever hits buildings, so the proportions are out of all the non-air tiles
+    float buildings = 1 - World.proportion(Tile.AIR);
+    badHits = World.proportion(Tile.BAD) / buildings;
+    moneyHits = World.proportion(Tile.MONEY) / buildings;
+    incomeHits = World.proportion(Tile.INCOME) / buildings;
+    foodHits = World.proportion(Tile.FOOD) / buildings;
+  }
+
+  /**
+   * Finds the best order to buy upgrades in from the current stats
+   *
+   * @param bought    how many times each upgrade has been bought
+   * @param money     player money
+   * @param income    player income
+   * @param food      player food
+   * @param hits      fresh tiles hit per launch
+   * @return the plan; its order is empty if buying nothing wins the fastest
+   */
+  public Plan plan(int[] bought, float money, float income, float food, float hits) {
+    if (hits != plannedHits) {
+      // every hit scales everything by what a bad tile would do and adds what the other tiles give
+      plannedHits = hits;
+      scales = new float[factors[3].length];
+      gains = new float[factors[3].length];
+      for (int n = 0; n < factors[3].length; n++) {
+        float kept = 1 - badHits * (1 - factors[3][n]);
+        scales[n] = (float) Math.pow(kept, hits);
+        gains[n] = kept == 1 ? hits : (1 - scales[n]) / (1 - kept);
+      }
+    }
+
+    HashMap<Integer, Label> labels = new HashMap<Integer, Label>();
+    ArrayList<Integer> layer = new ArrayList<Integer>();
+    Label start = new Label();
+    start.money = money;
+    start.income = income;
+    start.food = food;
+    start.parent = -1;
+    int startKey = key(bought);
+    labels.put(startKey, start);
+    layer.add(startKey);
+
+    int bestKey = -1;
+    int bestLaunches = Integer.MAX_VALUE;
+    int improved = 0;  // purchases in the fastest plan so far
+    int[] levels = new int[4];
+    for (int purchases = 0; ; purchases++) {
+      ArrayList<Integer> next = new ArrayList<Integer>();
+      for (int key : layer) {
+        Label l = labels.get(key);
+        levels(key, levels);
+
+        // finishing from here without buying anything else
+        int finish = finish(l, levels);
+        if (finish >= 0 && l.launches + finish < bestLaunches) {
+          bestLaunches = l.launches + finish;
+          bestKey = key;
+          improved = purchases;
+        }
+        // nothing is worth reaching if it already takes longer than the best plan
+        if (l.launches >= bestLaunches) {
+          continue;
+        }
+
+        // buying each upgrade next
+        for (int k = 0; k < 4; k++) {
+          if (levels[k] + 1 >= prices[k].length) {
+            continue;  // sold out
+          }
+          Label child = buy(l, levels, k);
+          if (child == null) {
+            continue;  // can't be afforded before starving
+          }
+          child.parent = key;
+          levels[k]++;
+          int childKey = key(levels);
+          levels[k]--;
+          Label old = labels.get(childKey);
+          if (old == null) {
+            labels.put(childKey, child);
+            next.add(childKey);
+          } else if (child.launches < old.launches
+                     || child.launches == old.launches && child.income + child.money > old.income + old.money) {
+            labels.put(childKey, child);
+          }
+        }
+      }
+      // stop once buying more has stopped helping, or everything is sold out or too slow
+      if (next.isEmpty() || bestKey != -1 && purchases - improved >= STALE_PURCHASES) {
+        break;
+      }
+      layer = next;
+    }
+
+    // follow the parents back to the start to get the order
+    Plan plan = new Plan();
+    plan.launches = bestKey == -1 ? -1 : bestLaunches;
+    ArrayList<Integer> order = new ArrayList<Integer>();
+    for (int key = bestKey; key != -1 && key != startKey; key = labels.get(key).parent) {
+      order.add(0, labels.get(key).bought);
+    }
+    plan.order = new int[order.size()];
+    for (int i = 0; i < order.size(); i++) {
+      plan.order[i] = order.get(i);
+    }
+    return plan;
+  }
+
+  /**
+   * Launches until an upgrade can be afforded with RESERVE food and money left over, then buys it
+   *
+   * @param from   state to start from
+   * @param levels purchases of each upgrade in that state
+   * @param k      upgrade to buy
+   * @return the state after buying, or null if the money never comes in
+   */
+  private Label buy(Label from, int[] levels, int k) {
+    float[] s = {from.money, from.income, from.food};
+    float price = prices[k][levels[k]];
+    int launches = 0;
+    while (s[0] < price || s[0] - price + s[2] < RESERVE) {
+      if (launches == MAX_LAUNCHES || !launch(s, levels)) {
+        return null;
+      }
+      launches++;
+    }
+    Label l = new Label();
+    l.launches = from.launches + launches;
+    l.money = s[0] - price;
+    l.income = s[1];
+    l.food = s[2];
+    l.bought = k;
+    return l;
+  }
+
+  /**
+   * Counts the launches until the income is high enough to win, without buying more upgrades
+   *
+   * @param from   state to start from
+   * @param levels purchases of each upgrade in that state
+   * @return launches until winning, or -1 if it never happens
+   */
+  private int finish(Label from, int[] levels) {
+    if (from.income > Simulation.WIN_INCOME) {
+      return 0;
+    }
+    // every bad tile takes away a share of the income, so it levels off where that matches what is hit
+    float f1 = factors[1][levels[1]];
+    float f3 = factors[3][levels[3]];
+    if (incomeHits * f1 / (badHits * (1 - f3)) <= Simulation.WIN_INCOME) {
+      return -1;
+    }
+    float[] s = {from.money, from.income, from.food};
+    for (int launches = 1; launches <= MAX_LAUNCHES; launches++) {
+      if (!launch(s, levels)) {
+        return -1;
+      }
+      if (s[1] > Simulation.WIN_INCOME) {
+        return launches;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Changes the stats by the expected result of one launch. Food is bought first if there isn't enough
+   *
+   * @param s      money, income, and food; changed in place
+   * @param levels purchases of each upgrade
+   * @return false if the player can't launch anymore
+   */
+  private boolean launch(float[] s, int[] levels) {
+    if (s[2] < 1) {
+      if (s[0] < 1) {
+        return false;
+      }
+      s[0] -= 1;
+      s[2] += 1;
+    }
+    s[2] -= factors[0][levels[0]] / 100;
+    s[0] += s[1];
+
+    float scale = scales[levels[3]];
+    float gained = gains[levels[3]];
+    s[0] = s[0] * scale + moneyHits * factors[1][levels[1]] * gained;
+    s[1] = s[1] * scale + incomeHits * factors[1][levels[1]] * gained;
+    s[2] = s[2] * scale + foodHits * factors[2][levels[2]] * gained;
+    return true;
+  }
+
+  /**
+   * Combines the purchases of the four upgrades into one key
+   *
+   * @param levels purchases of each upgrade, each below 128
+   * @return the key
+   */
+  private static int key(int[] levels) {
+    return ((levels[0] * 128 + levels[1]) * 128 + levels[2]) * 128 + levels[3];
+  }
+
+  /**
+   * Splits a key back into the purchases of the four upgrades
+   *
+   * @param key    the key
+   * @param levels array to write the purchases into
+   */
+  private static void levels(int key, int[] levels) {
+    for (int k = 3; k >= 0; k--) {
+      levels[k] = key % 128;
+      key /= 128;
+    }
+  }
+
+  /**
+   * Plans from some stats and prints the plan and how long it took
+   *
+   * @param args optionally money, income, food, and hits per launch; a new game by default
+   */
+  public static void main(String[] args) {
+    UpgradePlanner planner = new UpgradePlanner(Simulation.createUpgrades());
+    float money = args.length > 0 ? Float.parseFloat(args[0]) : 0;
+    float income = args.length > 1 ? Float.parseFloat(args[1]) : 0;
+    float food = args.length > 2 ? Float.parseFloat(args[2]) : 3;
+    float hits = args.length > 3 ? Float.parseFloat(args[3]) : HITS_PER_LAUNCH;
+
+    // plan a few times so that the time printed is with the JIT warmed up
+    Plan plan = null;
+    long start = 0;
+    for (int i = 0; i < 20; i++) {
+      start = System.nanoTime();
+      plan = planner.plan(new int[4], money, income, food, hits);
+    }
+    double ms = (System.nanoTime() - start) / 1e6;
+
+    System.out.println("order: " + Arrays.toString(plan.order));
+    System.out.println(String.format("wins in %d launches, planned in %.1f ms", plan.launches, ms));
+  }
+}
@@ -1,54 +1,145 @@
 import java.util.HashMap;
 import java.util.ArrayList;
-import processing.core.PApplet;
-import processing.core.PImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * represents the game world, including all the building tiles and chunk data
+ * drawing is done by WorldRenderer and PixelRenderer from the frames the simulation publishes
  */
 public class World {
+  public static final int DEFAULT_CHUNK_SIZE = 32;  // chunk size of new worlds
+  // largest chunk size; ChunkSummary counts a chunk's tiles in shorts, which 256x256 chunks would overflow
+  public static final int MAX_CHUNK_SIZE = 128;
   public int seed;                            // number that procedural generation is based on
-  private PApplet app;                        // PApplet to draw with
-  private HashMap<Integer, Chunk> chunks;     // currently loaded chunks (chunks that can be accessed)
+  public final int chunkSize;                 // width and height of a chunk in tiles, always a power of two
+  public final int chunkShift;                // log2 of the chunk size, for turning tiles into chunks with a shift
+  public final int chunkMask;                 // chunk size minus one, for in-chunk coordinates with a mask
+  public final String dir;                    // folder the chunks are saved in
+  public final WorldGenerator generator;      // decides which tile is where; fixed for the life of the world
+  private ChunkCache chunks;                  // currently loaded chunks (chunks that can be accessed)
                                               // accessed using one integer which is really a combined x and y coordinate
   // proportions of tiles that are bad tiles, $$$ tiles, wage tiles, and food tiles respectfully
   // all the rest are air
-  private final float[] percentages = {0.08f, 0.1f, 0.1f, 0.1f};
-
-  // Images for tiles
-  private PImage[] tiles = new PImage[9];
-  private PImage[] modifiers = new PImage[4];
+  private static final float[] percentages = {0.08f, 0.1f, 0.1f, 0.1f};
+  public static final Tile[] TILES = Tile.values();  // tiles by ordinal, for the terrain cache's bytes
+  private static final int MAX_SUMMARIES = 512;  // chunk summaries kept; they are rebuilt from the chunk if dropped
+  // tile counts per chunk, least recently used first. bounded, since searches keep summarising new chunks for
+  // as long as the player explores
+  private HashMap<Integer, ChunkSummary> summaries = new LinkedHashMap<Integer, ChunkSummary>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, ChunkSummary> eldest) {
+      return size() > MAX_SUMMARIES;
+    }
+  };
+  private ArrayList<WorldListener> listeners = new ArrayList<WorldListener>();  // told when tiles get used
 
   /**
-   * Constructs a world with no loaded chunks
+   * Constructs a new world with no loaded chunks, saved in the world folder with the default chunk size and
+   * generator
    *
-   * @param app  PApplet instance
    * @param seed seed for world generation
    */
-  public World(PApplet app, int seed) {
-    this.seed = seed;
-    this.chunks = new HashMap<Integer, Chunk>();
-    this.app = app;
+  public World(int seed) {
+    this(seed, DEFAULT_CHUNK_SIZE, "world", WorldGenerator.DEFAULT);
+  }
 
-    // loads images for buildings and tile modifiers
-    for (int i = 0; i < 9; i++) {
-      tiles[i] = app.loadImage("graphics/building" + i + ".png");
+  /**
+   * Constructs a world with no loaded chunks
+   *
+   * @param seed      seed for world generation
+   * @param chunkSize width and height of a chunk in tiles; must be a power of two up to MAX_CHUNK_SIZE
+   * @param dir       folder the chunks are saved in
+   * @param generator generator the world was created with
+   */
+  public World(int seed, int chunkSize, String dir, WorldGenerator generator) {
+    if (chunkSize <= 0 || Integer.bitCount(chunkSize) != 1) {
+      throw new IllegalArgumentException("chunk size must be a power of two: " + chunkSize);
+    }
+    if (chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException("chunk size can be at most " + MAX_CHUNK_SIZE + ": " + chunkSize);
     }
-    modifiers[0] = app.loadImage("graphics/bad.png");
-    modifiers[1] = app.loadImage("graphics/food.png");
-    modifiers[2] = app.loadImage("graphics/money.png");
-    modifiers[3] = app.loadImage("graphics/wage.png");
+    this.seed = seed;
+    this.chunks = new ChunkCache(chunkSize, ChunkCache.DEFAULT_BUDGET, ChunkCache.DEFAULT_MARGIN);
+    this.chunkSize = chunkSize;
+    this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+    this.chunkMask = chunkSize - 1;
+    this.dir = dir;
+    this.generator = generator;
   }
 
   /**
    * Saves all the currently loaded chunks into files
    */
   public void save() {
-    // loops through every key in the chunk hashmap
-    for (int n : chunks.keySet()) {
+    // loops through every key in the chunk cache
+    for (int n : chunks.map().keySet()) {
       // separates the key into the x and y coordinate and then saves to file
-      chunks.get(n).save(Convert.oneToFirst(n), Convert.oneToSecond(n));
+      chunks.get(n).save(dir, Convert.oneToFirst(n), Convert.oneToSecond(n));
+    }
+  }
+
+  /**
+   * Saves the loaded chunks that have changed since they were last saved or loaded
+   */
+  public void flush() {
+    chunks.flush(dir);
+  }
+
+  /**
+   * Gets the currently loaded chunks
+   *
+   * @return map of loaded chunks, keyed by the combined chunk coordinates
+   */
+  public HashMap<Integer, Chunk> getLoadedChunks() {
+    return chunks.map();
+  }
+
+  /**
+   * Gets the chunk cache, for its metrics
+   *
+   * @return the cache holding the loaded chunks
+   */
+  public ChunkCache getCache() {
+    return chunks;
+  }
+
+  /**
+   * Adds an already loaded chunk, so that loadChunks doesn't have to read it from its file
+   *
+   * @param x     chunk x coordinate
+   * @param y     chunk y coordinate
+   * @param chunk the chunk
+   */
+  public void addChunk(int x, int y, Chunk chunk) {
+    chunk.terrain = terrain(x, y);
+    chunks.put(Convert.twoToOne(x, y), chunk);
+  }
+
+  /**
+   * Drops a loaded chunk without saving it, for worlds whose chunks come from somewhere else (a spectator's)
+   *
+   * @param x chunk x coordinate
+   * @param y chunk y coordinate
+   */
+  public void removeChunk(int x, int y) {
+    chunks.remove(Convert.twoToOne(x, y));
+  }
+
+  /**
+   * Gets the used tiles of any chunk without loading it into the world. Loaded chunks are returned
+   * directly, everything else is read from its file
+   *
+   * @param x chunk x coordinate
+   * @param y chunk y coordinate
+   * @return the chunk, or a blank chunk if it was never saved
+   */
+  public Chunk peekChunk(int x, int y) {
+    Chunk c = chunks.get(Convert.twoToOne(x, y));
+    if (c != null) {
+      return c;
     }
+    return Chunk.load(dir, x, y, chunkSize);
   }
 
   /**
@@ -64,49 +155,30 @@ public class World {
   public void loadChunks(float x, float y, int width, int height, float zoom) {
     // calculating the coordinates of the top left chunk that needs to be loaded
     // for the whole view area to be covered
-    int l = (int) Math.floor((x - width / 2 / zoom) / Chunk.chunkSize) - 1;
-    int w = (int) Math.ceil(width / zoom / Chunk.chunkSize) + 2;
+    int l = (int) Math.floor((x - width / 2 / zoom) / chunkSize) - 1;
+    int w = (int) Math.ceil(width / zoom / chunkSize) + 2;
     // how many chunks wide and high the loading area must be
-    int t = (int) Math.floor((y - height / 2 / zoom) / Chunk.chunkSize) - 1;
-    int h = (int) Math.ceil(height / zoom / Chunk.chunkSize) + 2;
+    int t = (int) Math.floor((y - height / 2 / zoom) / chunkSize) - 1;
+    int h = (int) Math.ceil(height / zoom / chunkSize) + 2;
     
     // loops through every specified chunk
     for (int i = l; i < l + w; i++) {
       for (int j = t; j < t + h; j++) {
-        // if the chunk is not already loaded, then load the chunk and add it to the hashmap
-        if (chunks.get(Convert.twoToOne(i, j)) == null) {
-          chunks.put(Convert.twoToOne(i, j), Chunk.load(i, j));
+        // if the chunk is not already loaded, then load the chunk into a recycled one and add it to the cache
+        if (chunks.need(Convert.twoToOne(i, j)) == null) {
+          Chunk c = Chunk.load(dir, i, j, chunks.obtain());
+          c.terrain = terrain(i, j);
+          chunks.put(Convert.twoToOne(i, j), c);
         }
       }
     }
 
-    // removing chunks out of view aread
-    ArrayList<Integer> toRemove = new ArrayList<Integer>();
-
-    for (int i : chunks.keySet()) {
-      // loops through every chunk that is currently loaded
-      // the coordinates of the chunk (key separated into x and y)
-      int deletionX = Convert.oneToFirst(i);
-      int deletionY = Convert.oneToSecond(i);
-
-      // adds index to removal list if the chunk is outside of new view bounds
-      if (deletionX < l || deletionX > l + w || deletionY < t || deletionY > t + h) {
-        toRemove.add(i);
-      }
-    }
-
-    // removes every chunk in the toRemove list
-    for (int i : toRemove) {
-      int deletionX = Convert.oneToFirst(i);
-      int deletionY = Convert.oneToSecond(i);
-      // saves the chunk first before removing
-      chunks.get(i).save(deletionX, deletionY);
-      chunks.remove(i);
-    }
+    // off screen chunks stay loaded until the cache is over its budget
+    chunks.evict(dir, l, t, l + w - 1, t + h - 1);
   }
 
   /**
-   * Updates a tile to be used. Specifically, sets the array value at the spot in the
+   * Updates a tile to be used. Specifically, sets the bit at the spot in the
    * associated chunk to true
    *
    * @param x The x-coordinate of the tile
@@ -114,9 +186,96 @@ public class World {
    */
   public void updateChunk(int x, int y) {
     // get the chunk for the tile by converting tile coordinates to chunk coordinates
-    Chunk d = chunks.get(Convert.twoToOne(Convert.chunkCoord(x), Convert.chunkCoord(y)));
-    // set the array value in the chunk by converting tile to chunk-tile coordinates
-    d.data[Convert.tileCoord(x)][Convert.tileCoord(y)] = true;
+    Chunk d = chunks.get(Convert.twoToOne(Convert.chunkCoord(x, chunkShift), Convert.chunkCoord(y, chunkShift)));
+    // bouncing off a tile that is already used changes nothing
+    if (d.get(Convert.tileCoord(x, chunkMask), Convert.tileCoord(y, chunkMask))) {
+      return;
+    }
+    // set the bit in the chunk by converting tile to chunk-tile coordinates
+    d.set(Convert.tileCoord(x, chunkMask), Convert.tileCoord(y, chunkMask));
+    d.dirty = true;
+
+    // keep the chunk's counts up to date if it has been summarised
+    ChunkSummary summary = summaries.get(
+        Convert.twoToOne(Convert.chunkCoord(x, chunkShift), Convert.chunkCoord(y, chunkShift)));
+    if (summary != null) {
+      summary.markUsed(Convert.tileCoord(x, chunkMask), Convert.tileCoord(y, chunkMask), generate(x, y));
+    }
+
+    // let everything that keeps its own copy of the world know
+    for (WorldListener l : listeners) {
+      l.tileUsed(x, y);
+    }
+  }
+
+  /**
+   * Gets the tile counts of a chunk, building them the first time the chunk is asked for
+   *
+   * @param x chunk x coordinate
+   * @param y chunk y coordinate
+   * @return summary of the chunk
+   */
+  public ChunkSummary getSummary(int x, int y) {
+    ChunkSummary summary = summaries.get(Convert.twoToOne(x, y));
+    if (summary == null) {
+      summary = new ChunkSummary(this, x, y);
+      summaries.put(Convert.twoToOne(x, y), summary);
+    }
+    return summary;
+  }
+
+  /**
+   * Counts the tiles of a type within a rectangle. Only the chunk summaries are looked at, so the cost
+   * depends on how many chunks the rectangle touches and not how many tiles are in it
+   *
+   * @param type   tile type to count; unused tiles are counted by their type, used tiles as USED
+   * @param left   x coordinate of the left edge (inclusive)
+   * @param top    y coordinate of the top edge (inclusive)
+   * @param right  x coordinate of the right edge (exclusive)
+   * @param bottom y coordinate of the bottom edge (exclusive)
+   * @return number of tiles of that type in the rectangle
+   */
+  public int countTiles(Tile type, int left, int top, int right, int bottom) {
+    if (right <= left || bottom <= top) {
+      return 0;
+    }
+    int total = 0;
+    // loop through every chunk the rectangle touches
+    for (int cx = Convert.chunkCoord(left, chunkShift); cx <= Convert.chunkCoord(right - 1, chunkShift); cx++) {
+      for (int cy = Convert.chunkCoord(top, chunkShift); cy <= Convert.chunkCoord(bottom - 1, chunkShift); cy++) {
+        // part of the rectangle inside this chunk, in in-chunk coordinates
+        int l = Math.max(left - cx * chunkSize, 0);
+        int t = Math.max(top - cy * chunkSize, 0);
+        int r = Math.min(right - cx * chunkSize, chunkSize);
+        int b = Math.min(bottom - cy * chunkSize, chunkSize);
+        ChunkSummary summary = getSummary(cx, cy);
+        if (l == 0 && t == 0 && r == chunkSize && b == chunkSize) {
+          // whole chunk covered
+          total += summary.count(type);
+        } else {
+          total += summary.count(type, l, t, r, b);
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Registers a listener that is told about every tile that gets used
+   *
+   * @param l the listener
+   */
+  public void addListener(WorldListener l) {
+    listeners.add(l);
+  }
+
+  /**
+   * Unregisters a listener
+   *
+   * @param l the listener
+   */
+  public void removeListener(WorldListener l) {
+    listeners.remove(l);
   }
 
   /**
@@ -128,108 +287,93 @@ public class World {
    */
   public Tile getTile(int x, int y) {
     // getting chunk for the tile
-    Chunk d = chunks.get(Convert.twoToOne(Convert.chunkCoord(x), Convert.chunkCoord(y)));
+    Chunk d = chunks.get(Convert.twoToOne(Convert.chunkCoord(x, chunkShift), Convert.chunkCoord(y, chunkShift)));
     if (d != null) {
+      int i = Convert.tileCoord(x, chunkMask);
+      int j = Convert.tileCoord(y, chunkMask);
       // getting whether or not the tile is used
-      if (chunks.get(Convert.twoToOne(Convert.chunkCoord(x), Convert.chunkCoord(y))).data[Convert.tileCoord(x)][Convert.tileCoord(y)]) {
+      if (d.get(i, j)) {
         return Tile.USED;
       }
+      // loaded chunks carry their generated tiles, so there's nothing to generate
+      if (d.terrain != null) {
+        return TILES[d.terrain[i * chunkSize + j]];
+      }
     }
-    
+    return generate(x, y);
+  }
+
+  /**
+   * Generates the tile at the specified coordinates from the seed, ignoring whether it has been used
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   * @return Tile object representing the type of tile
+   */
+  public Tile generate(int x, int y) {
+    return generate(generator, seed, x, y);
+  }
+
+  /**
+   * Gets the generated tiles of a whole chunk from the process-wide terrain cache, ignoring whether they have
+   * been used. Worlds with the same seed and generator share the arrays, so a chunk is only generated once
+   *
+   * @param cx chunk x coordinate
+   * @param cy chunk y coordinate
+   * @return Tile ordinals with tile (i, j) at i * chunkSize + j; shared with other worlds, so read only
+   */
+  public byte[] terrain(int cx, int cy) {
+    return TerrainCache.SHARED.get(generator, seed, chunkSize, cx, cy);
+  }
+
+  /**
+   * Generates a tile of any world without needing a World object, for tools that look at many seeds
+   *
+   * @param generator generator of the world
+   * @param seed      seed of the world
+   * @param x    The x-coordinate of the tile
+   * @param y    The y-coordinate of the tile
+   * @return Tile object representing the type of tile
+   */
+  public static Tile generate(WorldGenerator generator, int seed, int x, int y) {
     if (Math.abs(x) < 2 && Math.abs(y) < 2) {
       //clear out a safe area for player at origin
       return Tile.AIR;
     }
+    return generator.generate(seed, x, y);
+  }
 
-    // mapping two numbers into one to feed into the PRNG algorithm from:
-    // https://stackoverflow.com/questions/919612/mapping-two-integers-to-one-in-a-unique-and-deterministic-way
-    long A = x >= 0 ? 2 * x : -2 * x - 1;
-    long B = y >= 0 ? 2 * y : -2 * y - 1;
-    long C = (A >= B ? A * A + A + B : A + B * B) / 2;
-    long n = x < 0 && y < 0 || x >= 0 && y >= 0 ? C : -C - 1;
-
-    // change output based on seed
-    n *= seed;
-    
-    //pretty fast prng algorithm
-    //from here: https://www.javamex.com/tutorials/random_numbers/xorshift.shtml
-    n ^= (n << 21);
-    n ^= (n >>> 35);
-    n ^= (n << 4);
-    
-    // some arbitrary conversion from an integer into a float between 0 and 1...
-    float m = Math.abs(n % 10000) / 10000f;
-
-    // based on the specified proportions of tiles and the float between 0 and 1,
-    // return the tile
-    if (m < percentages[0]) {
-      return Tile.BAD;
-    } else if (m < percentages[0] + percentages[1]) {
-      return Tile.MONEY;
-    } else if (m < percentages[0] + percentages[1] + percentages[2]) {
-      return Tile.INCOME;
-    } else if (m < percentages[0] + percentages[1] + percentages[2] + percentages[3]) {
-      return Tile.FOOD;
-    } else {
-      // every other tile is filled with air
-      return Tile.AIR;
+  /**
+   * Gets the proportion of generated tiles that are of a type
+   *
+   * @param type tile type
+   * @return proportion from 0 to 1; USED is never generated
+   */
+  public static float proportion(Tile type) {
+    switch (type) {
+      case BAD:
+        return percentages[0];
+      case MONEY:
+        return percentages[1];
+      case INCOME:
+        return percentages[2];
+      case FOOD:
+        return percentages[3];
+      case AIR:
+        return 1 - percentages[0] - percentages[1] - percentages[2] - percentages[3];
+      default:
+        return 0;
     }
   }
 
   /**
-   * Draws the world on the screen
-   *
-   * @param playerX x position
-   * @param playerY y position
-   * @param width   width of the screen
-   * @param height  height of the screen
-   * @param zoom    zoom factor
-   */
-  public void draw(float playerX, float playerY, int width, int height, float zoom) {
-    // boundaries of which tiles need to be drawn
-    int startX = (int) (Math.floor(playerX) - Math.ceil(width / 2 / zoom));
-    int startY = (int) (Math.floor(playerY) - Math.ceil(height / 2 / zoom));
-    int endX = (int) (Math.floor(playerX) + Math.ceil(width / 2 / zoom) + 2);
-    int endY = (int) (Math.floor(playerY) + Math.ceil(height / 2 / zoom) + 2);
-
-    for (int x = startX; x < endX; x++) {
-      for (int y = startY; y < endY; y++) {
-        // loop through every tile
-        Tile tile = getTile(x, y);
-        // screen dimensions of the tile
-        float tileLeft = width / 2 + zoom * (x - playerX);
-        float tileTop = height / 2 + zoom * (y - playerY);
-
-        if (tile != Tile.AIR) {
-          // draws bulding if the tile isn't air
-          app.image(tiles[(Math.abs((x + y) * seed) % 8) + 1], tileLeft, tileTop, zoom, zoom);
-
-          // drawing modifiers
-          switch (tile) {
-            case MONEY:
-              // +$$$ overlay
-              app.image(modifiers[2], tileLeft, tileTop, zoom, zoom);
-              break;
-            case INCOME:
-              // +WAGE overlay
-              app.image(modifiers[3], tileLeft, tileTop, zoom, zoom);
-              break;
-            case FOOD:
-              // +FOOD overlay
-              app.image(modifiers[1], tileLeft, tileTop, zoom, zoom);
-              break;
-            case BAD:
-              // -BAD overlay
-              app.image(modifiers[0], tileLeft, tileTop, zoom, zoom);
-              break;
-            default:
-              break;
-          }
-        } else {
-          // draw pavement if there's no building
-          app.image(tiles[0], tileLeft, tileTop, zoom, zoom);
-        }
-      }
-    }
+   * Picks which building image a non-air tile is drawn with
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   * @return index of the building image, from 1 to 8 (0 is pavement)
+   */
+  public int getBuilding(int x, int y) {
+    return (Math.abs((x + y) * seed) % 8) + 1;
   }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+/**
+ * decides which tile is generated at each spot of a world from its seed. a world keeps the generator it was
+ * created with for good, since its saved chunks only record which tiles were used, so the generator's name is
+ * stored in saves
+ */
+public interface WorldGenerator {
+  WorldGenerator LEGACY = new LegacyGenerator();  // the original generator, for worlds saved before there was a choice
+  WorldGenerator DEFAULT = new HashGenerator();   // used for new worlds
+
+  /**
+   * Generates a tile. The safe area around the spawn is handled by World, not here
+   *
+   * @param seed seed of the world
+   * @param x    The x-coordinate of the tile
+   * @param y    The y-coordinate of the tile
+   * @return Tile object representing the type of tile
+   */
+  Tile generate(int seed, int x, int y);
+
+  /**
+   * Gets the name the generator is saved as
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Finds a generator by the name it was saved as
+   *
+   * @param name saved name
+   * @return the generator
+   * @throws IllegalArgumentException if there is no generator with that name
+   */
+  static WorldGenerator forName(String name) {
+    if (name.equals(LEGACY.getName())) {
+      return LEGACY;
+    }
+    if (name.equals(DEFAULT.getName())) {
+      return DEFAULT;
+    }
+    throw new IllegalArgumentException("unknown world generator: " + name);
+  }
+}
@@ -0,0 +1,12 @@
+/**
+ * receives changes made to a world, for anything that keeps its own summary of the world up to date
+ */
+public interface WorldListener {
+  /**
+   * Called after a tile has been marked as used
+   *
+   * @param x The x-coordinate of the tile
+   * @param y The y-coordinate of the tile
+   */
+  void tileUsed(int x, int y);
+}
@@ -0,0 +1,80 @@
+import processing.core.PApplet;
+
+/**
+ * draws the tiles in view from a frame with scaled sprites from the atlas
+ */
+public class WorldRenderer {
+  private PApplet app;          // PApplet to draw with
+
+  // Images for tiles
+  private Sprite[] tiles = new Sprite[9];
+  private Sprite[] modifiers = new Sprite[4];
+
+  /**
+   * Constructs a new WorldRenderer
+   *
+   * @param app PApplet instance
+   */
+  public WorldRenderer(PApplet app) {
+    this.app = app;
+
+    // looks up the already decoded images for buildings and tile modifiers in the shared atlas
+    for (int i = 0; i < 9; i++) {
+      tiles[i] = Assets.get("building" + i);
+    }
+    modifiers[0] = Assets.get("bad");
+    modifiers[1] = Assets.get("food");
+    modifiers[2] = Assets.get("money");
+    modifiers[3] = Assets.get("wage");
+  }
+
+  /**
+   * Draws the world on the screen
+   *
+   * @param f      frame to draw
+   * @param width  width of the screen
+   * @param height height of the screen
+   */
+  public void draw(Frame f, int width, int height) {
+    float zoom = f.zoom;
+    for (int x = f.left; x < f.left + f.columns; x++) {
+      for (int y = f.top; y < f.top + f.rows; y++) {
+        // loop through every tile
+        Tile tile = f.getTile(x, y);
+        // screen dimensions of the tile
+        float tileLeft = width / 2 + zoom * (x - f.p.x);
+        float tileTop = height / 2 + zoom * (y - f.p.y);
+
+        if (tile != Tile.AIR) {
+          // draws bulding if the tile isn't air
+          tiles[f.getBuilding(x, y)].draw(app, tileLeft, tileTop, zoom, zoom);
+
+          // drawing modifiers
+          switch (tile) {
+            case MONEY:
+              // +$$$ overlay
+              modifiers[2].draw(app, tileLeft, tileTop, zoom, zoom);
+              break;
+            case INCOME:
+              // +WAGE overlay
+              modifiers[3].draw(app, tileLeft, tileTop, zoom, zoom);
+              break;
+            case FOOD:
+              // +FOOD overlay
+              modifiers[1].draw(app, tileLeft, tileTop, zoom, zoom);
+              break;
+            case BAD:
+              // -BAD overlay
+              modifiers[0].draw(app, tileLeft, tileTop, zoom, zoom);
+              break;
+            default:
+              break;
+          }
+        } else {
+          // draw pavement if there's no building
+          tiles[0].draw(app, tileLeft, tileTop, zoom, zoom);
+        }
+      }
+    }
+  }
+}
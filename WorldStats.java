@@ -0,0 +1,334 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.zip.Deflater;
+
+/**
+ * command line tool that reports balancing numbers for a saved world: how much was explored, how many tiles of
+ * each type were used against how many were generated there, how far from the origin they were used, and a
+ * heatmap of where. the chunk files are read and checked by ChunkFiles and joined with the generator's tiles for
+ * the save's seed, without going through World
+ *
+ * chunk files are streamed to a pool of workers by ChunkFiles, like WorldStoreTool. every worker adds into its
+ * own totals and they are only merged once the folder is done, so the workers share nothing but the queue
+ *
+ * usage: java WorldStats [dir] [threads] [heatmap.png]
+ */
+public class WorldStats {
+  private static final int RING = 64;             // width of the distance rings, in tiles
+  private static final int HEATMAP_SIZE = 1024;   // largest side of the heatmap; bigger worlds get chunks per pixel
+
+  private final int seed;
+  private final int chunkSize;
+  private final WorldGenerator generator;
+
+  /**
+   * totals for the chunks one worker has read
+   */
+  private static class Totals {
+    long chunks;         // chunk files
+    long touched;        // chunk files with any used tile
+    long corrupt;        // chunk files that couldn't be read, were cut short, or had something else than tiles
+    long[] generated = new long[Tile.values().length];  // tiles the generator put in the explored chunks
+    long[] used = new long[Tile.values().length];       // of those, the ones used, by what they were
+    long[] rings = new long[16];   // used tiles by distance from the origin, RING tiles per ring
+    double distance;     // sum of the distances of used tiles, for the mean
+    double farthest;     // distance of the farthest used tile
+    int[] heat = new int[3 * 256];  // x, y, used tiles of every chunk file
+    int heatCount;
+
+    /**
+     * Counts a used tile's distance
+     *
+     * @param x tile x coordinate
+     * @param y tile y coordinate
+     */
+    void addDistance(int x, int y) {
+      double d = Math.sqrt((double) x * x + (double) y * y);
+      int ring = (int) (d / RING);
+      if (ring >= rings.length) {
+        rings = Arrays.copyOf(rings, Math.max(rings.length * 2, ring + 1));
+      }
+      rings[ring]++;
+      distance += d;
+      farthest = Math.max(farthest, d);
+    }
+
+    /**
+     * Records a chunk for the heatmap
+     *
+     * @param cx    chunk x coordinate
+     * @param cy    chunk y coordinate
+     * @param count used tiles in the chunk
+     */
+    void addHeat(int cx, int cy, int count) {
+      if (heatCount * 3 == heat.length) {
+        heat = Arrays.copyOf(heat, heat.length * 2);
+      }
+      heat[heatCount * 3] = cx;
+      heat[heatCount * 3 + 1] = cy;
+      heat[heatCount * 3 + 2] = count;
+      heatCount++;
+    }
+
+    /**
+     * Adds another worker's totals into these
+     *
+     * @param t totals to add
+     */
+    void merge(Totals t) {
+      chunks += t.chunks;
+      touched += t.touched;
+      corrupt += t.corrupt;
+      for (int i = 0; i < used.length; i++) {
+        generated[i] += t.generated[i];
+        used[i] += t.used[i];
+      }
+      if (t.rings.length > rings.length) {
+        rings = Arrays.copyOf(rings, t.rings.length);
+      }
+      for (int i = 0; i < t.rings.length; i++) {
+        rings[i] += t.rings[i];
+      }
+      distance += t.distance;
+      farthest = Math.max(farthest, t.farthest);
+      for (int i = 0; i < t.heatCount; i++) {
+        addHeat(t.heat[i * 3], t.heat[i * 3 + 1], t.heat[i * 3 + 2]);
+      }
+    }
+  }
+
+  /**
+   * Constructs the report for a saved world, reading its seed, chunk size, and generator
+   *
+   * @param dir folder the world is saved in
+   * @throws IOException if the world's data file can't be read
+   */
+  public WorldStats(Path dir) throws IOException {
+    // the seed is the first thing in the data file
+    try (Scanner s = new Scanner(dir.resolve("_data.txt").toFile())) {
+      seed = s.nextInt();
+    }
+    chunkSize = WorldStoreTool.readChunkSize(dir);
+    generator = WorldStoreTool.readGenerator(dir);
+  }
+
+  /**
+   * Reads every chunk file of the world and adds up the totals
+   *
+   * @param dir     folder the world is saved in
+   * @param threads number of worker threads
+   * @return totals over the whole world
+   * @throws IOException if the folder can't be listed
+   * @throws InterruptedException if interrupted while waiting for the workers
+   */
+  public Totals run(Path dir, int threads) throws IOException, InterruptedException {
+    Reader[] readers = new Reader[threads];
+    for (int t = 0; t < threads; t++) {
+      readers[t] = new Reader();
+    }
+    ChunkFiles.stream(dir, "stats", readers);
+
+    // only now do the workers' totals come together
+    Totals total = new Totals();
+    for (Reader r : readers) {
+      total.merge(r.totals);
+    }
+    return total;
+  }
+
+  /**
+   * a worker thread's buffers and totals
+   */
+  private class Reader implements ChunkFiles.Handler {
+    private Totals totals = new Totals();
+    // one byte more than a chunk so that files that are too long show up
+    private byte[] buffer = new byte[chunkSize * chunkSize + 1];
+    private Chunk chunk = new Chunk(chunkSize);
+
+    @Override
+    public void handle(Path p) {
+      read(p, buffer, chunk, totals);
+    }
+
+    @Override
+    public void failed(Path p, RuntimeException e) {
+      totals.corrupt++;
+    }
+  }
+
+  /**
+   * Adds one chunk file to the totals
+   *
+   * @param p      chunk file
+   * @param buffer buffer to read the file into
+   * @param chunk  chunk to gather the used tiles in
+   * @param totals totals to add to
+   */
+  private void read(Path p, byte[] buffer, Chunk chunk, Totals totals) {
+    String[] coords = p.getFileName().toString().split("_");
+    int cx = Integer.parseInt(coords[0]);
+    int cy = Integer.parseInt(coords[1]);
+    try {
+      // a damaged file still counts with the tiles before the damage, like Chunk.load
+      if (ChunkFiles.parse(buffer, ChunkFiles.read(p, buffer), chunk) != null) {
+        totals.corrupt++;
+      }
+    } catch (IOException e) {
+      totals.corrupt++;
+      return;
+    }
+
+    totals.chunks++;
+    int count = 0;
+    for (int i = 0; i < chunkSize; i++) {
+      int x = cx * chunkSize + i;
+      for (int j = 0; j < chunkSize; j++) {
+        int y = cy * chunkSize + j;
+        Tile t = World.generate(generator, seed, x, y);
+        totals.generated[t.ordinal()]++;
+        if (chunk.get(i, j)) {
+          totals.used[t.ordinal()]++;
+          totals.addDistance(x, y);
+          count++;
+        }
+      }
+    }
+    if (count > 0) {
+      totals.touched++;
+    }
+    totals.addHeat(cx, cy, count);
+  }
+
+  /**
+   * Writes a heatmap of used tiles per chunk: black where nothing was explored, dark blue where nothing was
+   * used, and red to yellow for more and more used tiles
+   *
+   * @param t   totals of the world
+   * @param out PNG file to write
+   * @throws IOException if the file can't be written
+   */
+  public void writeHeatmap(Totals t, String out) throws IOException {
+    if (t.heatCount == 0) {
+      return;
+    }
+    int left = Integer.MAX_VALUE;
+    int top = Integer.MAX_VALUE;
+    int right = Integer.MIN_VALUE;
+    int bottom = Integer.MIN_VALUE;
+    for (int i = 0; i < t.heatCount; i++) {
+      left = Math.min(left, t.heat[i * 3]);
+      top = Math.min(top, t.heat[i * 3 + 1]);
+      right = Math.max(right, t.heat[i * 3]);
+      bottom = Math.max(bottom, t.heat[i * 3 + 1]);
+    }
+    // chunks per pixel, so that far apart chunks don't make a huge image
+    long span = Math.max((long) right - left + 1, (long) bottom - top + 1);
+    int cell = (int) ((span + HEATMAP_SIZE - 1) / HEATMAP_SIZE);
+    int width = (int) (((long) right - left) / cell + 1);
+    int height = (int) (((long) bottom - top) / cell + 1);
+
+    int[] sums = new int[width * height];
+    boolean[] explored = new boolean[width * height];
+    int max = 1;
+    for (int i = 0; i < t.heatCount; i++) {
+      int at = (int) (((long) t.heat[i * 3 + 1] - top) / cell * width + ((long) t.heat[i * 3] - left) / cell);
+      sums[at] += t.heat[i * 3 + 2];
+      explored[at] = true;
+      max = Math.max(max, sums[at]);
+    }
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      // square root so that the few busiest chunks don't wash out the rest
+      double v = Math.sqrt((double) sums[i] / max);
+      pixels[i] = !explored[i] ? 0xFF000000 : sums[i] == 0 ? 0xFF101830
+                  : 0xFF000000 | (int) (96 + 159 * v) << 16 | (int) (224 * v) << 8 | 32;
+    }
+
+    PngWriter png = new PngWriter(new BufferedOutputStream(new FileOutputStream(out), 1 << 16), width, height,
+                                  Deflater.BEST_SPEED);
+    png.writeRows(pixels, 0, height, new byte[PngWriter.rowBytes(width)]);
+    png.close();
+    System.out.println(String.format("heatmap of %dx%d pixels (%d chunks per pixel) from chunk (%d, %d) written "
+                                     + "to %s", width, height, cell, left, top, out));
+  }
+
+  /**
+   * Prints the report
+   *
+   * @param t totals of the world
+   */
+  public void print(Totals t) {
+    long area = t.chunks * chunkSize * chunkSize;
+    System.out.println(String.format("seed %d, %s generator, %dx%d chunks", seed, generator.getName(), chunkSize,
+                                     chunkSize));
+    System.out.println(String.format("explored: %d chunks, %d tiles; %d chunks with used tiles; %d files damaged",
+                                     t.chunks, area, t.touched, t.corrupt));
+
+    System.out.println("  tile   | generated |      used | used share");
+    long usedTotal = 0;
+    for (Tile type : Tile.values()) {
+      if (type == Tile.USED) {
+        continue;
+      }
+      usedTotal += t.used[type.ordinal()];
+      System.out.println(String.format("  %-6s | %9d | %9d | %9.2f%%", type, t.generated[type.ordinal()],
+                                       t.used[type.ordinal()], t.generated[type.ordinal()] == 0 ? 0.0
+                                       : 100.0 * t.used[type.ordinal()] / t.generated[type.ordinal()]));
+    }
+    if (usedTotal == 0) {
+      return;
+    }
+
+    System.out.println(String.format("used tiles: %d, %.3f per explored tile; distance from origin mean %.1f, "
+                                     + "farthest %.1f tiles", usedTotal, (double) usedTotal / area,
+                                     t.distance / usedTotal, t.farthest));
+    System.out.println("  distance      |      used | share");
+    // rings are merged so that there are at most 20 rows however far the player went
+    int last = t.rings.length - 1;
+    while (t.rings[last] == 0) {
+      last--;
+    }
+    int group = last / 20 + 1;
+    for (int i = 0; i <= last; i += group) {
+      long sum = 0;
+      for (int k = i; k < i + group && k <= last; k++) {
+        sum += t.rings[k];
+      }
+      System.out.println(String.format("  %6d-%-6d | %9d | %5.1f%%", i * RING, (i + group) * RING, sum,
+                                       100.0 * sum / usedTotal));
+    }
+  }
+
+  /**
+   * Reads a saved world and prints the report, writing the heatmap if a file is given
+   *
+   * @param args optionally the world folder, worker threads, and the heatmap PNG to write
+   * @throws Exception if the world can't be read or the heatmap can't be written
+   */
+  public static void main(String[] args) throws Exception {
+    Path dir = Paths.get(args.length > 0 ? args[0] : "world");
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    String heatmap = args.length > 2 ? args[2] : null;
+    if (!new File(dir.toFile(), "_data.txt").isFile()) {
+      System.out.println("no _data.txt in " + dir);
+      return;
+    }
+
+    WorldStats stats = new WorldStats(dir);
+    long start = System.nanoTime();
+    Totals t = stats.run(dir, threads);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    stats.print(t);
+    if (heatmap != null) {
+      stats.writeHeatmap(t, heatmap);
+    }
+    System.out.println(String.format("%d chunks in %.2f s with %d threads: %.0f chunks/s", t.chunks, seconds,
+                                     threads, t.chunks / seconds));
+  }
+}
@@ -0,0 +1,253 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * command line tool that checks every chunk file of a saved world and optionally writes a compacted copy.
+ * the copy packs each chunk 8 tiles to a byte (see Chunk.PACKED), which the game loads like its own text
+ * files; chunks that are all zeros are left out (they load as blank chunks anyway), and truncated or garbled
+ * chunks are reported and only their readable part is kept. the folder is streamed to a pool of workers by
+ * ChunkFiles, so memory stays the same no matter how many chunk files there are, and a file that fails in an
+ * unexpected way is counted as an error
+ *
+ * usage: java WorldStoreTool dir [out] [threads] [chunk size]
+ *   without out, the world is only verified; the input folder is never changed
+ */
+public class WorldStoreTool {
+  private final int chunkSize;  // width and height of a chunk in tiles
+  private final Path out;       // folder to write the compacted world to, or null to only verify
+
+  // totals, updated by all the workers
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong valid = new AtomicLong();
+  private final AtomicLong empty = new AtomicLong();
+  private final AtomicLong corrupt = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();   // files that couldn't be read or written, not corrupt
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+
+  /**
+   * Constructs a tool for one world
+   *
+   * @param chunkSize width and height of a chunk in tiles
+   * @param out       folder to write the compacted world to, or null to only verify
+   */
+  public WorldStoreTool(int chunkSize, Path out) {
+    this.chunkSize = chunkSize;
+    this.out = out;
+  }
+
+  /**
+   * a worker thread's buffers
+   */
+  private class Checker implements ChunkFiles.Handler {
+    // one byte more than a chunk so that files that are too long show up
+    private byte[] buffer = new byte[chunkSize * chunkSize + 1];
+    private Chunk chunk = new Chunk(chunkSize);
+    private byte[] packed = new byte[Chunk.packedLength(chunkSize)];
+
+    @Override
+    public void handle(Path p) {
+      check(p, buffer, chunk, packed);
+    }
+
+    @Override
+    public void failed(Path p, RuntimeException e) {
+      fail(p, "failed: " + e);
+    }
+  }
+
+  /**
+   * Verifies (and copies) every chunk file in a folder
+   *
+   * @param dir     folder the world is saved in
+   * @param threads number of worker threads
+   * @throws IOException if the folder can't be listed
+   * @throws InterruptedException if interrupted while waiting for the workers
+   */
+  public void run(Path dir, int threads) throws IOException, InterruptedException {
+    ChunkFiles.Handler[] checkers = new ChunkFiles.Handler[threads];
+    for (int t = 0; t < threads; t++) {
+      checkers[t] = new Checker();
+    }
+    ChunkFiles.stream(dir, "store", checkers);
+  }
+
+  /**
+   * Checks one chunk file and writes it to the output folder, packed, if it holds any used tiles
+   *
+   * @param p      chunk file
+   * @param buffer buffer to read the file into
+   * @param chunk  chunk to gather the tiles in
+   * @param packed buffer to pack the tiles into
+   */
+  private void check(Path p, byte[] buffer, Chunk chunk, byte[] packed) {
+    files.incrementAndGet();
+    int n;
+    try {
+      n = ChunkFiles.read(p, buffer);
+    } catch (IOException e) {
+      fail(p, "can't be read: " + e);
+      return;
+    }
+    bytesIn.addAndGet(n);
+
+    String problem = ChunkFiles.parse(buffer, n, chunk);
+    if (problem != null) {
+      // keep what could be read; Chunk.load treats the missing tiles as unused
+      report(p, problem);
+    } else {
+      valid.incrementAndGet();
+    }
+    write(p, chunk, packed);
+  }
+
+  /**
+   * Writes the tiles of a checked chunk file to the output folder, packed, unless none are used
+   *
+   * @param p      chunk file the tiles came from
+   * @param chunk  the tiles
+   * @param packed buffer to pack the tiles into
+   */
+  private void write(Path p, Chunk chunk, byte[] packed) {
+    if (!chunk.any()) {
+      // all zeros, no need to keep it
+      empty.incrementAndGet();
+      return;
+    }
+    if (out != null) {
+      packed[0] = Chunk.PACKED;
+      chunk.toBytes(packed, 1);
+      try (OutputStream o = Files.newOutputStream(out.resolve(p.getFileName()))) {
+        o.write(packed);
+        written.incrementAndGet();
+        bytesOut.addAndGet(packed.length);
+      } catch (IOException e) {
+        fail(p, "can't be written: " + e);
+      }
+    }
+  }
+
+  /**
+   * Prints a problem with a chunk file
+   *
+   * @param p       chunk file
+   * @param problem what is wrong with it
+   */
+  private void report(Path p, String problem) {
+    corrupt.incrementAndGet();
+    System.out.println(p.getFileName() + ": " + problem);
+  }
+
+  /**
+   * Prints a chunk file that couldn't be read or written. Counted apart from corrupt chunks, since the file
+   * itself may be fine
+   *
+   * @param p       chunk file
+   * @param problem what went wrong
+   */
+  private void fail(Path p, String problem) {
+    failed.incrementAndGet();
+    System.out.println(p.getFileName() + ": " + problem);
+  }
+
+  /**
+   * Reads the chunk size a world was saved with from its data file
+   *
+   * @param dir folder the world is saved in
+   * @return the chunk size, 24 for saves from before it was recorded, or 0 if there is no data file
+   */
+  public static int readChunkSize(Path dir) {
+    try (Scanner s = new Scanner(dir.resolve("_data.txt").toFile())) {
+      // the chunk size comes after the seed, position, four upgrades, and three stats
+      for (int i = 0; i < 10; i++) {
+        s.next();
+      }
+      return s.hasNextInt() ? s.nextInt() : 24;
+    } catch (IOException | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Reads which generator a saved world was made with
+   *
+   * @param dir folder the world is saved in
+   * @return the generator; the legacy one for saves from before it was recorded
+   * @throws IOException if the data file can't be read or names an unknown generator
+   */
+  public static WorldGenerator readGenerator(Path dir) throws IOException {
+    try (Scanner s = new Scanner(dir.resolve("_data.txt").toFile())) {
+      // the generator comes after the chunk size
+      for (int i = 0; i < 11 && s.hasNext(); i++) {
+        s.next();
+      }
+      return s.hasNext() ? WorldGenerator.forName(s.next()) : WorldGenerator.LEGACY;
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Verifies a world folder and prints the totals, writing the compacted copy if an output folder is given
+   *
+   * @param args world folder, then optionally the output folder ("-" for none), worker threads, and chunk size
+   * @throws Exception if the folders can't be listed or created
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("usage: java WorldStoreTool dir [out] [threads] [chunk size]");
+      return;
+    }
+    Path dir = Paths.get(args[0]);
+    Path out = args.length > 1 && !args[1].equals("-") ? Paths.get(args[1]) : null;
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : readChunkSize(dir);
+    if (chunkSize <= 0) {
+      System.out.println("no chunk size in " + dir.resolve("_data.txt") + ", pass it as the fourth argument");
+      return;
+    }
+
+    if (out != null) {
+      if (Files.exists(out) && Files.isSameFile(dir, out)) {
+        System.out.println("the output folder must be different from the world folder");
+        return;
+      }
+      Files.createDirectories(out);
+      // the data file and snapshot are copied as they are, after checking the snapshot
+      File snapshot = dir.resolve("_snapshot.bin").toFile();
+      if (snapshot.isFile()) {
+        try {
+          Snapshot.read(snapshot.getPath());
+          Files.copy(snapshot.toPath(), out.resolve("_snapshot.bin"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+          System.out.println("_snapshot.bin: dropped, " + e.getMessage());
+        }
+      }
+      if (Files.isRegularFile(dir.resolve("_data.txt"))) {
+        Files.copy(dir.resolve("_data.txt"), out.resolve("_data.txt"), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+    WorldStoreTool tool = new WorldStoreTool(chunkSize, out);
+    long start = System.nanoTime();
+    tool.run(dir, threads);
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.println(String.format("%d chunk files in %.2f s (%.0f files/s, %d threads)",
+                                     tool.files.get(), seconds, tool.files.get() / seconds, threads));
+    System.out.println(String.format("%d valid, %d corrupt, %d empty, %d read or write errors", tool.valid.get(),
+                                     tool.corrupt.get(), tool.empty.get(), tool.failed.get()));
+    if (out != null) {
+      System.out.println(String.format("%d chunks written to %s, %d of %d bytes kept", tool.written.get(), out,
+                                       tool.bytesOut.get(), tool.bytesIn.get()));
+    }
+  }
+}